@@ -1,11 +1,11 @@
 package ai;
 
+import ai.board.MoveList;
+import ai.board.Position;
 import ai.constant.AiConst;
-import ai.utility.AiUtils;
-import gui.constant.GuiConst;
 import observer.GameStatusChecker;
 
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * This abstract class is the prototype of all AI agents.
@@ -20,59 +20,136 @@ public abstract class Agent {
 
     public static int aiPieceType = -1;
 
+    /**
+     * Best move found at the root of the last search, the recursive searches only return scores
+     */
+    static Node rootBestMove;
+
+    /**
+     * Time budget of one move in milliseconds, used by the searches bounded by time instead of depth
+     */
+    static long timeBudget = AiConst.DEFAULT_TIME_BUDGET;
+
+    /**
+     * Wall-clock time in milliseconds when the running search must stop, Long.MAX_VALUE if it is not bounded. It is
+     * read by the helper threads of the parallel searches
+     */
+    private static volatile long deadline = Long.MAX_VALUE;
+
+    /**
+     * Whether the deadline has passed, the results of an interrupted search must be discarded. It is set by any
+     * search thread and only reset while no helper thread is running
+     */
+    static volatile boolean timeUp;
+
+    /**
+     * Move lists reused by the searches, one for each depth of the search tree
+     */
+    private static MoveList[] moveLists = new MoveList[0];
+
     /**
      * Check whether the chessboard is empty or not
      *
-     * @param chess The chessboard
+     * @param position The chessboard
      * @return A boolean indicates whether the chessboard is empty or not
      */
-    protected static boolean isOpening(int[][] chess) {
-        if (chess[7][7] != AiConst.EMPTY_STONE) {
-            return false;
-        }
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                if (chess[i][j] != AiConst.EMPTY_STONE) {
-                    return false;
-                }
-            }
-        }
-        return true;
+    protected static boolean isOpening(Position position) {
+        return position.getStoneCount() == 0;
     }
 
     /**
      * Detects whether next move can win the game or not, if next move wins then returns that node,
+     * the chessboard is restored before returning
      *
-     * @param chess     2-dimensional array represents the chessboard
-     * @param moves     List contains all possible move represents as an array [x, y, score]
+     * @param position  The chessboard
+     * @param moves     List contains all possible moves
      * @param pieceType Identification of black(1) and white(-1)
      * @return Node leeds to win or null if no matched situation
      */
-    static Node terminalCheck(int[][] chess, List<int[]> moves, int pieceType) {
+    static Node terminalCheck(Position position, MoveList moves, int pieceType) {
         //detects if next move can win directly
-        for (int[] move : moves) {
-            int newX = move[0];
-            int newY = move[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-            if (GameStatusChecker.isFiveInLine(nextMove, newX, newY)) {
-                return new Node(move[0], move[1], 500000, nextMove);
+        for (int i = 0; i < moves.size(); i++) {
+            if (isWinningMove(position, moves.getX(i), moves.getY(i), pieceType)) {
+                return new Node(moves.getX(i), moves.getY(i), 500000);
             }
         }
 
         //prevents opponent's direct win
-        for (int[] move : moves) {
-            int newX = move[0];
-            int newY = move[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType * -1);
-            if (GameStatusChecker.isFiveInLine(nextMove, newX, newY)) {
-                return new Node(move[0], move[1], 500000, nextMove);
+        for (int i = 0; i < moves.size(); i++) {
+            if (isWinningMove(position, moves.getX(i), moves.getY(i), pieceType * -1)) {
+                return new Node(moves.getX(i), moves.getY(i), 500000);
             }
         }
 
         return null;
     }
 
+    /**
+     * Checks whether a move forms five in line, the move is taken back before returning
+     *
+     * @param position  The chessboard
+     * @param x         X coordinate of the move
+     * @param y         Y coordinate of the move
+     * @param pieceType Identification of black(1) and white(-1)
+     * @return A boolean indicates whether the move wins the game or not
+     */
+    private static boolean isWinningMove(Position position, int x, int y, int pieceType) {
+        position.makeMove(x, y, pieceType);
+        boolean isWinning = GameStatusChecker.isFiveInLine(position, x, y);
+        position.unmakeMove();
+        return isWinning;
+    }
+
+    /**
+     * Starts the timer of a search bounded by the time budget
+     */
+    static void startTimer() {
+        deadline = System.currentTimeMillis() + timeBudget;
+        timeUp = false;
+    }
+
+    /**
+     * Stops the timer, searches are no longer interrupted
+     */
+    static void stopTimer() {
+        deadline = Long.MAX_VALUE;
+        timeUp = false;
+    }
+
+    /**
+     * Checks whether the running search has used up its time budget, the clock is not read if no timer is
+     * started
+     *
+     * @return A boolean indicates whether the search must stop
+     */
+    static boolean isTimeUp() {
+        if (!timeUp && deadline != Long.MAX_VALUE && System.currentTimeMillis() >= deadline) {
+            timeUp = true;
+        }
+        return timeUp;
+    }
+
+    /**
+     * Returns the move list of a depth of the search tree, the list is allocated once and reused afterwards
+     *
+     * @param depth Depth of the node
+     * @return The move list of the depth
+     */
+    static MoveList moveList(int depth) {
+        if (depth >= moveLists.length) {
+            moveLists = Arrays.copyOf(moveLists, depth + 1);
+        }
+        if (moveLists[depth] == null) {
+            moveLists[depth] = new MoveList();
+        }
+        return moveLists[depth];
+    }
+
     public static void setMaximumSearchDepth(int depth) {
         maximumSearchDepth = depth;
     }
+
+    public static void setTimeBudget(long milliseconds) {
+        timeBudget = milliseconds;
+    }
 }
@@ -1,8 +1,8 @@
 package ai;
 
+import ai.board.Position;
 import ai.utility.ChessboardScanUtils;
 import ai.utility.HeuristicChessboardUtils;
-import gui.constant.GuiConst;
 
 /**
  * This class is an AI agent uses greedy best-first search
@@ -21,24 +21,22 @@ public class GreedyBestFirst extends Agent {
      * @return Position of next move
      */
     public static int[] nextMove(int[][] chess) {
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
             int currentMaxScore = 0;
             int x = 0;
             int y = 0;
-            for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-                for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                    //for each empty tiles, calculates their marks
-                    if (chess[i][j] == 0) {
-                        //-1 for white piece
-                        int score = totalMark(chess, i, j);
-                        if (score > currentMaxScore) {
-                            currentMaxScore = score;
-                            x = i;
-                            y = j;
-                        }
-                    }
+            //for each candidate tiles, calculates their marks
+            for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+                int i = Position.toX(index);
+                int j = Position.toY(index);
+                int score = totalMark(position, i, j);
+                if (score > currentMaxScore) {
+                    currentMaxScore = score;
+                    x = i;
+                    y = j;
                 }
             }
             System.out.println("currentMax: " + currentMaxScore + " " + x + " " + y);
@@ -49,28 +47,32 @@ public class GreedyBestFirst extends Agent {
     /**
      * Calculate the total score for AI and human
      *
-     * @param chess The chessboard
-     * @param x     X-coordinate of the piece
-     * @param y     Y-coordinate of the piece
+     * @param position The chessboard
+     * @param x        X-coordinate of the piece
+     * @param y        Y-coordinate of the piece
      * @return The total score
      */
-    public static int totalMark(int[][] chess, int x, int y) {
-        return markPiece(chess, x, y, -1) + markPiece(chess, x, y, 1);
+    public static int totalMark(Position position, int x, int y) {
+        return markPiece(position, x, y, -1) + markPiece(position, x, y, 1);
     }
 
     /**
      * Calculate the total score of a specific piece
      *
-     * @param chess     The chess board
+     * @param position  The chess board
      * @param x         X-coordinate of the piece
      * @param y         Y-coordinate of the piece
      * @param pieceType Piece type for scoring
      * @return Score
      */
-    private static int markPiece(int[][] chess, int x, int y, int pieceType) {
-        return HeuristicChessboardUtils.eval(ChessboardScanUtils.horizontalAdjacentPieces8(chess, x, y, pieceType))
-            + HeuristicChessboardUtils.eval(ChessboardScanUtils.verticalAdjacentPieces8(chess, x, y, pieceType))
-            + HeuristicChessboardUtils.eval(ChessboardScanUtils.diagonalAdjacentPieces8(chess, x, y, pieceType))
-            + HeuristicChessboardUtils.eval(ChessboardScanUtils.antiDiagonalAdjacentPieces8(chess, x, y, pieceType));
+    private static int markPiece(Position position, int x, int y, int pieceType) {
+        int horizontal = ChessboardScanUtils.horizontalAdjacentPieces8(position, x, y, pieceType);
+        int vertical = ChessboardScanUtils.verticalAdjacentPieces8(position, x, y, pieceType);
+        int diagonal = ChessboardScanUtils.diagonalAdjacentPieces8(position, x, y, pieceType);
+        int antiDiagonal = ChessboardScanUtils.antiDiagonalAdjacentPieces8(position, x, y, pieceType);
+
+        int length = ChessboardScanUtils.ADJACENT_LENGTH;
+        return HeuristicChessboardUtils.eval(horizontal, length) + HeuristicChessboardUtils.eval(vertical, length)
+            + HeuristicChessboardUtils.eval(diagonal, length) + HeuristicChessboardUtils.eval(antiDiagonal, length);
     }
 }
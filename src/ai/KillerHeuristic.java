@@ -1,12 +1,11 @@
 package ai;
 
-import ai.constant.AiConst;
+import ai.board.MoveList;
+import ai.board.Position;
 import ai.utility.AiUtils;
 import ai.utility.HeuristicChessboardUtils;
 import gui.Background;
 
-import java.util.List;
-
 /**
  * This class is an AI agent uses killer heuristics
  * <p>
@@ -33,15 +32,14 @@ public class KillerHeuristic extends Agent {
      * @return The position of the next move
      */
     public static int[] killerAbp(int[][] chess) {
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
             //instantiate root node with preset x and y to the center of the chessboard(good for pruning)
             resetKillerMoves();
-            Node root = new Node(-1, -1, -1, chess);
-            Node bestMove;
-
-            bestMove = killerMaximizer(root, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            killerMaximizer(position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            Node bestMove = rootBestMove;
 
             int[] result = bestMove.getCoordinates();
             Background.addMessage(
@@ -54,52 +52,53 @@ public class KillerHeuristic extends Agent {
     /**
      * This methods is the maximizer of alpha beta pruning with killer heuristic
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Initializes to the piece type of AI
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node killerMaximizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int killerMaximizer(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MIN_VALUE;
-        Node bestChild = null;
+        int bestX = -1;
+        int bestY = -1;
 
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, moveList(depth));
 
         //merge killer moves with all possible moves
-        if (depth == 2 && killerMoves[depth][0] != null && isKillerMoveLegal(chess, killerMoves[depth][0])) {
+        if (depth == 2 && killerMoves[depth][0] != null && isKillerMoveLegal(position, killerMoves[depth][0])) {
             System.out.println("Added");
             //merge
-            moves.add(0, killerMoves[depth][0]);
+            moves.addFirst(Position.index(killerMoves[depth][0][0], killerMoves[depth][0][1]), 0);
         }
 
         //goes terminal check
         if (depth == 1) {
-            Node n = MinimaxAbp.terminalCheck(chess, moves, pieceType);
+            Node n = MinimaxAbp.terminalCheck(position, moves, pieceType);
             if (n != null) {
-                return n;
+                rootBestMove = n;
+                return n.getScore();
             }
         }
 
         for (int i = 0; i < moves.size(); i++) {
-            int newX = moves.get(i)[0];
-            int newY = moves.get(i)[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-            Node child = new Node(newX, newY, -1, nextMove);
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = killerMinimizer(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
 
-            int score = killerMinimizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
             if (score > bestScore) {
                 bestScore = score;
-                bestChild = child;
+                bestX = newX;
+                bestY = newY;
                 alpha = score;
             }
             //beta pruning
@@ -111,67 +110,54 @@ public class KillerHeuristic extends Agent {
             }
         }
 
-        root.setScore(bestScore);
-
         if (depth == 1) {
             System.out.println("total nodes: " + count);
             Background.addMessage("Total nodes: " + count);
             count = 0;
-            return bestChild;
+            rootBestMove = new Node(bestX, bestY, bestScore);
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
      * This methods is the minimizer of alpha beta pruning with killer heuristic
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Identification of players, 1 for black piece and -1 white piece
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node killerMinimizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int killerMinimizer(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MAX_VALUE;
-        Node bestChild = null;
 
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, moveList(depth));
 
         //merge killer moves with all possible moves
-        if (depth == 2 && killerMoves[depth][0] != null && isKillerMoveLegal(chess, killerMoves[depth][0])) {
+        if (depth == 2 && killerMoves[depth][0] != null && isKillerMoveLegal(position, killerMoves[depth][0])) {
             //merge
             System.out.println("Added");
-            moves.add(0, killerMoves[depth][0]);
-        }
-
-        if (depth == 1) {
-            Node n = MinimaxAbp.terminalCheck(chess, moves, pieceType);
-            if (n != null) {
-                return n;
-            }
+            moves.addFirst(Position.index(killerMoves[depth][0][0], killerMoves[depth][0][1]), 0);
         }
 
         //for each child
         for (int i = 0; i < moves.size(); i++) {
-            int newX = moves.get(i)[0];
-            int newY = moves.get(i)[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-            Node child = new Node(newX, newY, -1, nextMove);
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = killerMaximizer(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
 
-            int score = killerMaximizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
             if (score < bestScore) {
                 bestScore = score;
-                bestChild = child;
                 beta = score;
             }
             //alpha pruning
@@ -183,16 +169,7 @@ public class KillerHeuristic extends Agent {
             }
         }
 
-        root.setScore(bestScore);
-
-        if (depth == 1) {
-            System.out.println("total nodes: " + count);
-            Background.addMessage("Total nodes: " + count);
-            count = 0;
-            return bestChild;
-        }
-
-        return root;
+        return bestScore;
     }
 
     /**
@@ -220,13 +197,13 @@ public class KillerHeuristic extends Agent {
     /**
      * Check the legality of the killer move
      *
-     * @param chess      The chessboard
+     * @param position   The chessboard
      * @param killerMove Killer move
      * @return A boolean indicates whether the killer move is legal or not
      */
-    private static boolean isKillerMoveLegal(int[][] chess, int[] killerMove) {
-        System.out.println("coor " + killerMove[0] + " " + killerMove[1] + (chess[killerMove[0]][killerMove[1]]
-            == AiConst.EMPTY_STONE));
-        return chess[killerMove[0]][killerMove[1]] == AiConst.EMPTY_STONE;
+    private static boolean isKillerMoveLegal(Position position, int[] killerMove) {
+        System.out.println("coor " + killerMove[0] + " " + killerMove[1] + position.isEmpty(killerMove[0],
+            killerMove[1]));
+        return position.isEmpty(killerMove[0], killerMove[1]);
     }
 }
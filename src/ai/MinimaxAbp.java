@@ -1,12 +1,11 @@
 package ai;
 
+import ai.board.MoveList;
+import ai.board.Position;
 import ai.constant.AiConst;
 import ai.utility.AiUtils;
 import ai.utility.HeuristicChessboardUtils;
 import gui.Background;
-import gui.constant.GuiConst;
-
-import java.util.List;
 
 /**
  * This class is an AI agent uses miniMax, alpha beta pruning and aspiration search
@@ -15,6 +14,12 @@ import java.util.List;
  * @version 1.2
  */
 public class MinimaxAbp extends Agent {
+    /**
+     * Bit index of the best move found by the previous iteration of iterative deepening, searched first at the
+     * root, or -1 if there is none
+     */
+    private static int principalMove = -1;
+
     private MinimaxAbp() {
     }
 
@@ -25,70 +30,68 @@ public class MinimaxAbp extends Agent {
      * @return Coordinates of the best next move for the AI
      */
     public static int[] startMiniMax(int[][] chess) {
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
-            Node root = new Node(-1, -1, -1, chess);
-            Node result = miniMax(root, 1, aiPieceType, true);
+            miniMax(position, 1, aiPieceType, true);
+            Node result = rootBestMove;
             System.out.println("x " + result.getX() + "y " + result.getY() + "score " + result.getScore());
             return new int[] {result.getX(), result.getY(), aiPieceType};
         }
     }
 
     /**
-     * Provides depth-first miniMax search for the game tree and returns the most valuable node
+     * Provides depth-first miniMax search for the game tree and returns the score of the most valuable node,
+     * the best move of the root is stored in rootBestMove
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current Depth of the node
      * @param pieceType Identification for players, 1 for black piece and -1 for white piece
      * @param isMax     Identification for max nodes and min nodes
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node miniMax(Node root, int depth, int pieceType, boolean isMax) {
+    private static int miniMax(Position position, int depth, int pieceType, boolean isMax) {
         count++;
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
-        Node bestChild = null;
-
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                //if the tile is empty
-                if (chess[i][j] == 0) {
-                    //create child node and search it
-                    int[][] dummy = AiUtils.copyArray(chess);
-                    dummy[i][j] = pieceType;
-                    Node child = new Node(i, j, 0, dummy);
-
-                    int score = miniMax(child, depth + 1, pieceType * -1, !isMax).getScore();
-
-                    if (isMax) {
-                        if (score > bestScore) {
-                            bestScore = score;
-                            bestChild = child;
-                        }
-                    } else {
-                        if (score < bestScore) {
-                            bestScore = score;
-                            bestChild = child;
-                        }
-                    }
+        int bestX = -1;
+        int bestY = -1;
+
+        //for each candidate tile
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            int i = Position.toX(index);
+            int j = Position.toY(index);
+            //make the move and search it
+            position.makeMove(i, j, pieceType);
+            int score = miniMax(position, depth + 1, pieceType * -1, !isMax);
+            position.unmakeMove();
+
+            if (isMax) {
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestX = i;
+                    bestY = j;
+                }
+            } else {
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestX = i;
+                    bestY = j;
                 }
             }
         }
-        root.setScore(bestScore);
 
         if (depth == 1) {
             System.out.println("Minimax total nodes: " + count);
             count = 0;
-            return bestChild;
+            rootBestMove = new Node(bestX, bestY, bestScore);
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
@@ -98,13 +101,12 @@ public class MinimaxAbp extends Agent {
      * @return Coordinates of the best next move for the AI
      */
     public static int[] startAlphaBetaPruning(int[][] chess) {
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
-            Node root = new Node(-1, -1, -1, chess);
-            Node bestMove;
-
-            bestMove = maximizer(root, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            maximizer(position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            Node bestMove = rootBestMove;
 
             int[] result = new int[2];
             result[0] = bestMove.getX();
@@ -119,110 +121,92 @@ public class MinimaxAbp extends Agent {
      * Maximizer of alpha beta pruning, it prunes the current node when the alpha value of current node is greater
      * than or equal to the beta value of its ancient node
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Identification of players, 1 for black and -1 for white
      * @param alpha     alpha value for Max node
      * @param beta      beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node maximizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int maximizer(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MIN_VALUE;
-        Node bestChild = null;
-
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                // for each possible moves, do depth first search
-                if (chess[i][j] == 0) {
-                    int[][] nextMove = AiUtils.nextMoveChessboard(chess, i, j, pieceType);
-                    Node child = new Node(i, j, -1, nextMove);
-
-                    int score = minimizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
-                    if (score > bestScore) {
-                        bestScore = score;
-                        bestChild = child;
-                        alpha = score;
-                    }
-                    //beta pruning
-                    if (score >= beta) {
-                        root.setScore(bestScore);
-                        return root;
-                    }
-                }
+        int bestX = -1;
+        int bestY = -1;
+
+        // for each candidate moves, do depth first search
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            int i = Position.toX(index);
+            int j = Position.toY(index);
+            position.makeMove(i, j, pieceType);
+            int score = minimizer(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestX = i;
+                bestY = j;
+                alpha = score;
+            }
+            //beta pruning
+            if (score >= beta) {
+                return bestScore;
             }
         }
 
-        root.setScore(bestScore);
-
         if (depth == 1) {
             System.out.println("total nodes: " + count);
             count = 0;
-            return bestChild;
+            rootBestMove = new Node(bestX, bestY, bestScore);
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
      * Minimizer of alpha beta pruning, it prunes the current node when the beta value of current node is less than
      * or equal to the alpha value of its ancient node
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Identification of players, 1 for black and -1 for white
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node minimizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int minimizer(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MAX_VALUE;
-        Node bestChild = null;
-
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                // for each possible moves, do depth first search
-                if (chess[i][j] == 0) {
-                    int[][] nextMove = AiUtils.nextMoveChessboard(chess, i, j, pieceType);
-                    Node child = new Node(i, j, -1, nextMove);
-
-                    int score = maximizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
-                    if (score < bestScore) {
-                        bestScore = score;
-                        bestChild = child;
-                        beta = score;
-                    }
-                    //alpha pruning
-                    if (score <= alpha) {
-                        root.setScore(bestScore);
-                        return root;
-                    }
-                }
-            }
-        }
 
-        root.setScore(bestScore);
+        // for each candidate moves, do depth first search
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            int i = Position.toX(index);
+            int j = Position.toY(index);
+            position.makeMove(i, j, pieceType);
+            int score = maximizer(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
 
-        if (depth == 1) {
-            return bestChild;
+            if (score < bestScore) {
+                bestScore = score;
+                beta = score;
+            }
+            //alpha pruning
+            if (score <= alpha) {
+                return bestScore;
+            }
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
@@ -233,14 +217,12 @@ public class MinimaxAbp extends Agent {
      * @return most valuable node
      */
     public static int[] startAlphaBetaPruningWithSort(int[][] chess) {
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
-            //instantiate root node with preset x and y to the center of the chessboard(good for pruning)
-            Node root = new Node(-1, -1, -1, chess);
-            Node bestMove;
-
-            bestMove = maximizerWithSort(root, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            maximizerWithSort(position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            Node bestMove = rootBestMove;
 
             int[] result = bestMove.getCoordinates();
             Background.addMessage(
@@ -253,45 +235,56 @@ public class MinimaxAbp extends Agent {
     /**
      * Maximizer of alpha beta pruning, every possible moves are sorted by the h2 heuristic function
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Identification of players, 1 for black piece and -1 for white
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node maximizerWithSort(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int maximizerWithSort(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
+        //the search is abandoned once the time budget is used up
+        if (isTimeUp()) {
+            return 0;
+        }
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MIN_VALUE;
-        Node bestChild = null;
+        int bestX = -1;
+        int bestY = -1;
 
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, moveList(depth));
 
         //detect five in row
         if (depth == 1) {
-            Node n = terminalCheck(chess, moves, pieceType);
+            Node n = terminalCheck(position, moves, pieceType);
             if (n != null) {
-                return n;
+                rootBestMove = n;
+                return n.getScore();
+            }
+            if (principalMove >= 0) {
+                moves.moveToFront(principalMove);
             }
         }
 
-        for (int[] move : moves) {
-            int newX = move[0];
-            int newY = move[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-            Node child = new Node(newX, newY, -1, nextMove);
+        for (int i = 0; i < moves.size(); i++) {
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = minimizerWithSort(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
+            if (timeUp) {
+                return 0;
+            }
 
-            int score = minimizerWithSort(child, depth + 1, pieceType * -1, alpha, beta).getScore();
             if (score > bestScore) {
                 bestScore = score;
-                bestChild = child;
+                bestX = newX;
+                bestY = newY;
                 alpha = score;
             }
             //beta pruning
@@ -300,58 +293,52 @@ public class MinimaxAbp extends Agent {
             }
         }
 
-        root.setScore(bestScore);
-
         if (depth == 1) {
             System.out.println("total nodes: " + count);
             Background.addMessage("Total nodes: " + count);
             count = 0;
-            return bestChild;
+            rootBestMove = new Node(bestX, bestY, bestScore);
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
      * Minimizer of alpha beta pruning, every possible moves are sorted by the h2 heuristic function
      *
-     * @param root      Current tree node
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node
      * @param pieceType Identification of players, 1 for black piece and -1 for white
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node minimizerWithSort(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int minimizerWithSort(Position position, int depth, int pieceType, int alpha, int beta) {
         count++;
+        if (isTimeUp()) {
+            return 0;
+        }
         //base case
         if (depth >= maximumSearchDepth) {
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
         int bestScore = Integer.MAX_VALUE;
-        Node bestChild = null;
 
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
-        if (depth == 1) {
-            Node n = terminalCheck(chess, moves, pieceType);
-            if (n != null) {
-                return n;
-            }
-        }
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, moveList(depth));
 
-        for (int[] move : moves) {
-            int newX = move[0];
-            int newY = move[1];
-            int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-            Node child = new Node(newX, newY, -1, nextMove);
+        for (int i = 0; i < moves.size(); i++) {
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = maximizerWithSort(position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
+            if (timeUp) {
+                return 0;
+            }
 
-            int score = maximizerWithSort(child, depth + 1, pieceType * -1, alpha, beta).getScore();
             if (score < bestScore) {
                 bestScore = score;
-                bestChild = child;
                 beta = score;
             }
             //alpha pruning
@@ -360,115 +347,87 @@ public class MinimaxAbp extends Agent {
             }
         }
 
-        root.setScore(bestScore);
+        return bestScore;
+    }
 
-        if (depth == 1) {
-            System.out.println("total nodes: " + count);
-            Background.addMessage("Total nodes: " + count);
-            count = 0;
-            return bestChild;
+    /**
+     * Starts iterative deepening, the sorted alpha beta pruning searches one more ply on each iteration until the
+     * time budget is used up. The best move of each iteration is searched first by the next one, and the best move
+     * of the deepest completed iteration is returned.
+     *
+     * @param chess 2-dimension array represents the chessboard
+     * @return Coordinates of the best next move for the AI
+     */
+    public static int[] startIterativeDeepening(int[][] chess) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
+            return new int[] {7, 7, aiPieceType};
         }
 
-        return root;
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, moveList(1));
+        Node bestMove = terminalCheck(position, moves, aiPieceType);
+        if (bestMove == null) {
+            //falls back to the best sorted move if not even one ply can be searched in time
+            bestMove = new Node(moves.getX(0), moves.getY(0), moves.getScore(0));
+            int depthLimit = maximumSearchDepth;
+            int emptyTiles = Position.TILE_NUM - position.getStoneCount();
+            startTimer();
+            for (int plies = 1; plies <= emptyTiles; plies++) {
+                maximumSearchDepth = plies + 1;
+                count = 0;
+                maximizerWithSort(position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                if (timeUp) {
+                    break;
+                }
+                bestMove = rootBestMove;
+                principalMove = Position.index(bestMove.getX(), bestMove.getY());
+                Background.addMessage("Completed depth " + plies + " score " + bestMove.getScore());
+            }
+            stopTimer();
+            maximumSearchDepth = depthLimit;
+            principalMove = -1;
+        }
+
+        int[] result = bestMove.getCoordinates();
+        Background.addMessage(
+            "Computer move : (x, " + result[0] + ") (y, " + result[1] + ") score " + bestMove.getScore());
+        return new int[] {result[0], result[1], aiPieceType};
     }
 
     /**
      * Starts aspiration search
      *
-     * @param chess 2-dimension array represents the chessboard
+     * @param chess       2-dimension array represents the chessboard
+     * @param expectScore Expected score of the best move
      * @return Coordinates of the best next move for the AI
      */
     public static int[] aspirationSearch(int[][] chess, int expectScore) {
         int expectedLowerBound = expectScore - AiConst.WINDOW_SIZE_ASPIRATION;
         int expectedUpperBound = expectScore + AiConst.WINDOW_SIZE_ASPIRATION;
-        Node root = new Node(-1, -1, -1, chess);
-        Node bestMove = maximizerWithSort(root, 0, -1, expectedLowerBound, expectedUpperBound);
-        int resultScore = bestMove.getScore();
+        Position position = new Position(chess);
+        int resultScore = maximizerWithSort(position, 1, -1, expectedLowerBound, expectedUpperBound);
 
         if (resultScore > expectedLowerBound && resultScore < expectedUpperBound) {
             //expected
             System.out.println("expected");
-            return bestMove.getCoordinatesAndScore();
+            return rootBestMove.getCoordinatesAndScore();
         }
 
         if (resultScore >= expectedUpperBound) {
             //fail high
             System.out.println("fail high");
-            Node failHighNode = maximizerWithSort(root, 0, -1, resultScore - 1, Integer.MAX_VALUE);
-            return failHighNode.getCoordinatesAndScore();
+            maximizerWithSort(position, 1, -1, resultScore - 1, Integer.MAX_VALUE);
+            return rootBestMove.getCoordinatesAndScore();
         }
 
         if (resultScore <= expectedLowerBound) {
             //fail low
             System.out.println("fail low");
-            Node failLowNode = maximizerWithSort(root, 0, -1, Integer.MIN_VALUE, resultScore + 1);
+            maximizerWithSort(position, 1, -1, Integer.MIN_VALUE, resultScore + 1);
 
-            return failLowNode.getCoordinatesAndScore();
+            return rootBestMove.getCoordinatesAndScore();
         }
 
         return null;
     }
 }
-
-/**
- * This class represents the node of the search tree
- *
- * @author Cirun Zhang
- * @version 1.1
- */
-class Node {
-    /**
-     * X coordinate of the last move
-     */
-    private int x;
-
-    /**
-     * Y coordinate of the last move
-     */
-    private int y;
-
-    /**
-     * Score of the node
-     */
-    private int score;
-
-    /**
-     * Chessboard of the board
-     */
-    private int[][] chess;
-
-    Node(int x, int y, int score, int[][] chess) {
-        this.x = x;
-        this.y = y;
-        this.score = score;
-        this.chess = chess;
-    }
-
-    int getX() {
-        return this.x;
-    }
-
-    int getY() {
-        return this.y;
-    }
-
-    int getScore() {
-        return this.score;
-    }
-
-    int[][] getChess() {
-        return this.chess;
-    }
-
-    void setScore(int score) {
-        this.score = score;
-    }
-
-    int[] getCoordinates() {
-        return new int[] {this.x, this.y};
-    }
-
-    int[] getCoordinatesAndScore() {
-        return new int[] {this.x, this.y, this.score};
-    }
-}
\ No newline at end of file
@@ -1,47 +1,153 @@
 package ai;
 
+import ai.board.MoveList;
+import ai.board.NodePool;
+import ai.board.Playout;
+import ai.board.Position;
+import ai.board.Zobrist;
 import ai.constant.AiConst;
 import ai.utility.AiUtils;
 import gui.Background;
-import gui.constant.GuiConst;
 import observer.GameStatusChecker;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class is an AI agent uses Monte Carlo tree search
+ * <p>
+ * The nodes of the tree are kept in a {@link NodePool}, which stores only the move of a node, so every iteration
+ * rebuilds the chessboard of the selected node by replaying the moves from the root on a scratch copy of the root
+ * board, and takes them back at the end of the iteration. The rollouts are played by a {@link Playout} of the
+ * thread, so an iteration allocates nothing but the children of an expanded node.
+ * <p>
+ * The tree of the last serial or tree-parallel search is kept with the Zobrist hash of its root. If the hash of the
+ * next chessboard is the old one plus the move chosen by the AI and one reply of the opponent, the node reached by
+ * these two moves becomes the new root and its statistics are searched on. A caller maintaining the hash of the
+ * chessboard between moves passes it in, otherwise it is calculated from the chessboard.
+ * <p>
+ * A search stops when its iteration budget or the time budget is used up, or when the most visited child of the
+ * root leads the second one by more visits than the remaining iterations can give, the clock and the lead are
+ * checked once every {@value #CHECK_INTERVAL} iterations.
+ * <p>
+ * The search is also an MCTS-Solver. A child winning by five in a line is kept as a proven win, a node with a
+ * proven winning reply is a proven loss and a node whose replies are all proven losses is a proven win. The proofs
+ * are propagated up the path of the iteration, selection skips the proven children, the result of a proven node is
+ * propagated without a playout, and the search returns as soon as the root is proven. A node is expanded with its
+ * best few replies only, so once all of them are proven losses it is widened to every reply before it can be
+ * proven.
+ * <p>
+ * The tree can also be searched by several worker threads at the same time. The statistics of the nodes are
+ * updated atomically, a node is expanded by the first worker claiming it while the others roll out from it, and
+ * every worker adds a virtual loss to the nodes on its path until it has propagated its result, so the workers
+ * spread over different branches instead of following each other.
+ * <p>
+ * In root-parallel search every worker searches a tree of its own with its own random seed instead, and the
+ * statistics of the children of the roots are summed to choose the move.
+ * <p>
+ * Serial search can also use RAVE. Every playout then updates the all-moves-as-first statistics of the children of
+ * the nodes on the path whose moves were played later in the iteration by the same player, and the UCB value blends
+ * the mean reward of a child with its AMAF mean, the weight of the AMAF mean decays as the child is visited.
  *
  * @author Cirun Zhang
- * @version 1.1
+ * @version 1.4
  */
 public class MonteCarlo extends Agent {
     /**
-     * Counter for MCTS
+     * Number of iterations between two checks of the clock and of the lead of the best child
      */
-    private static int iteration;
+    private static final int CHECK_INTERVAL = 256;
+
+    /**
+     * Maximum number of nodes of the shared arena, an iteration adds at most 10 nodes
+     */
+    private static final int POOL_CAPACITY = 1 << 20;
+
+    /**
+     * Virtual loss added by a worker to the nodes on its path in tree-parallel search
+     */
+    private static final int VIRTUAL_LOSS = 1;
+
+    /**
+     * Number of visits of a child at which its mean reward and its AMAF mean are weighted equally in RAVE
+     */
+    private static final int RAVE_EQUIVALENCE = 1000;
+
+    /**
+     * Number of worker threads of tree-parallel search
+     */
+    private static int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of iterations of one search
+     */
+    private static int iterationBudget = AiConst.MCTS_ITERATIONS;
+
+    /**
+     * Whether the running search has to stop, set by the thread checking the budgets
+     */
+    private static volatile boolean stopped;
+
+    /**
+     * Whether the running search uses RAVE, set before the search starts
+     */
+    private static boolean rave;
+
+    /**
+     * Arena of the tree of serial and tree-parallel search
+     */
+    private static NodePool treePool;
+
+    /**
+     * Whether the shared arena holds the tree of a last search
+     */
+    private static boolean hasTree;
+
+    /**
+     * Zobrist hash of the chessboard and AI piece type of the root of the tree in the shared arena
+     */
+    private static long treeHash;
+
+    private static int treePieceType;
+
+    /**
+     * Arenas of the trees of root-parallel search, one per worker
+     */
+    private static NodePool[] rootPools = new NodePool[0];
+
+    /**
+     * Move list of each thread reused when generating child nodes
+     */
+    private static final ThreadLocal<MoveList> childMoves = ThreadLocal.withInitial(MoveList::new);
+
+    /**
+     * Path of the nodes selected by each thread in one iteration, a path holds at most one node per empty tile and
+     * the root
+     */
+    private static final ThreadLocal<int[]> paths = ThreadLocal.withInitial(() -> new int[Position.TILE_NUM + 1]);
+
+    /**
+     * Scratch board and random generator of each thread used by the rollouts
+     */
+    private static final ThreadLocal<Playout> playouts =
+        ThreadLocal.withInitial(() -> new Playout(ThreadLocalRandom.current().nextLong()));
+
+    /**
+     * Piece type of the player of each tile played in one iteration of each thread, 0 for the other tiles
+     */
+    private static final ThreadLocal<int[]> amafPlayers = ThreadLocal.withInitial(() -> new int[Position.TILE_NUM]);
 
     public static void tester(int[][] chess) {
-        iteration = 0;
-        TreeNode root = new TreeNode(true, aiPieceType * -1, -1, -1, chess, null);
-        while (iteration < 30000) {
-            selection(root);
-        }
-
-        List<TreeNode> children = root.getChildren();
-        int maxVisits = Integer.MIN_VALUE;
-        int max_x = -1;
-        int max_y = -1;
-        for (TreeNode child : children) {
-            if (child.getVisitsCount() > maxVisits) {
-                maxVisits = child.getVisitsCount();
-                max_x = child.getX();
-                max_y = child.getY();
-            }
-        }
+        startSearch();
+        Position position = new Position(chess);
+        NodePool pool = sharedPool();
+        int root = reuseTree(pool, position.getHash());
+        search(pool, root, position, new AtomicInteger(), 30000, 0, true);
+        stopTimer();
 
-        System.out.println(max_x + "===" + max_y);
+        int[] move = moveOf(pool, bestChild(pool, root));
+        System.out.println(move[0] + "===" + move[1]);
     }
 
     /**
@@ -51,399 +157,857 @@ public class MonteCarlo extends Agent {
      * @return Position of the next move
      */
     public static int[] monteCarloTreeSearch(int[][] chess) {
-        Background.addMessage("Doing MCTS, please wait..");
-        iteration = 0;
-
-        TreeNode root = new TreeNode(true, aiPieceType * -1, -1, -1, chess, null);
-        //execute MCTS for 50000 times
-        while (iteration < 50000) {
-            selection(root);
-        }
-
-        List<TreeNode> children = root.getChildren();
-        int maxVisits = Integer.MIN_VALUE;
-        int max_x = -1;
-        int max_y = -1;
-        for (TreeNode child : children) {
-            if (child.getVisitsCount() > maxVisits) {
-                maxVisits = child.getVisitsCount();
-                max_x = child.getX();
-                max_y = child.getY();
-            }
-        }
-
-        System.out.println(root.getReward() + "-" + root.getVisitsCount());
-        System.out.println(max_x + "===" + max_y);
-        System.out.println(maxVisits);
-        return new int[] {max_x, max_y, aiPieceType};
+        return monteCarloTreeSearch(chess, Zobrist.hash(chess));
     }
 
     /**
-     * Selection process of MCTS
+     * Entrance of MCTS on a chessboard whose hash is maintained by the caller
      *
-     * @param root The node for process selection, initially the node is set to the root
+     * @param chess 2-dimensional array represents the chessboard
+     * @param hash  Zobrist hash of the chessboard
+     * @return Position of the next move
      */
-    private static void selection(TreeNode root) {
-        if (root.isLeaf()) {
-            if (root.getVisitsCount() == 0) {
-                rollout(root);
-            } else {
-                expansion(root);
-            }
-        } else {
-            List<TreeNode> children = root.getChildren();
-            TreeNode best = ucbSelection(children);
-            if (best != null) {
-                selection(best);
-            } else {
-                System.out.println("null");
-            }
+    public static int[] monteCarloTreeSearch(int[][] chess, long hash) {
+        Background.addMessage("Doing MCTS, please wait..");
+        rave = false;
+        return serialSearch(chess, hash);
+    }
 
-        }
+    /**
+     * Entrance of MCTS with RAVE
+     *
+     * @param chess 2-dimensional array represents the chessboard
+     * @return Position of the next move
+     */
+    public static int[] raveMonteCarloTreeSearch(int[][] chess) {
+        return raveMonteCarloTreeSearch(chess, Zobrist.hash(chess));
     }
 
     /**
-     * Expansion process of MCTS
+     * Entrance of MCTS with RAVE on a chessboard whose hash is maintained by the caller
      *
-     * @param node The leaf node need to be expanded
+     * @param chess 2-dimensional array represents the chessboard
+     * @param hash  Zobrist hash of the chessboard
+     * @return Position of the next move
      */
-    private static void expansion(TreeNode node) {
-        List<TreeNode> children = generatesChildren(node);
-        node.setChildren(children);
-        node.setLeaf(false);
-        selection(node);
+    public static int[] raveMonteCarloTreeSearch(int[][] chess, long hash) {
+        Background.addMessage("Doing MCTS with RAVE, please wait..");
+        rave = true;
+        return serialSearch(chess, hash);
     }
 
     /**
-     * Rollout process of MCTS. The rollout only stops when the simulated game is terminated
+     * Serial MCTS on the shared arena
      *
-     * @param node The node need to be simulated
+     * @param chess 2-dimensional array represents the chessboard
+     * @param hash  Zobrist hash of the chessboard
+     * @return Position of the next move
      */
-    private static void rollout(TreeNode node) {
-        iteration++;
-        int numOfMoves = 0;
-        int[][] chess = AiUtils.copyArray(node.getChess());
-        int lastTurnPlayer = node.getThisTurnPlayer();
-        PossibleMove randomMove;
+    private static int[] serialSearch(int[][] chess, long hash) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
+            return new int[] {7, 7, aiPieceType};
+        }
 
-        do {
-            lastTurnPlayer *= -1;
-            numOfMoves++;
-            randomMove = getRandomMove(chess);
-            if (randomMove == null) {
-                System.out.println("randomMove == null");
-                break;
-            }
-            placePiece(chess, randomMove, lastTurnPlayer);
-        } while (!GameStatusChecker.isFiveInLine(chess, randomMove.getX(), randomMove.getY()));
+        startSearch();
+        NodePool pool = sharedPool();
+        int root = reuseTree(pool, hash);
+        AtomicInteger iterations = new AtomicInteger();
+        search(pool, root, position, iterations, iterationBudget, 0, true);
+        stopTimer();
 
-        //back propagation
-        backPropagation(node, 1, lastTurnPlayer);
+        addIterationMessage(iterations.get(), iterationBudget);
+        return bestMove(pool, root);
     }
 
-
     /**
-     * Back propagation process of MCTS
+     * Entrance of tree-parallel MCTS, the worker threads share one tree until the iterations are used up
      *
-     * @param node         The back propagated node
-     * @param reward       The reward for winning nodes
-     * @param winningPiece Indicates which player wins
+     * @param chess 2-dimensional array represents the chessboard
+     * @return Position of the next move
      */
-    private static void backPropagation(TreeNode node, int reward, int winningPiece) {
-        if (node != null) {
-            if (node.getThisTurnPlayer() == winningPiece) {
-                node.increaseReward(reward);
-            } else {
-                node.increaseReward(-1);
-            }
-            node.increaseVisitCount();
-            backPropagation(node.getParent(), reward, winningPiece);
-        }
+    public static int[] parallelMonteCarloTreeSearch(int[][] chess) {
+        return parallelMonteCarloTreeSearch(chess, Zobrist.hash(chess));
     }
 
     /**
-     * UCB-1 function of MCTS, it is used to balance the visit count and win count
+     * Entrance of tree-parallel MCTS on a chessboard whose hash is maintained by the caller
      *
-     * @param node Calculates the UCB value for this particular node
-     * @return UCB value
+     * @param chess 2-dimensional array represents the chessboard
+     * @param hash  Zobrist hash of the chessboard
+     * @return Position of the next move
      */
-    private static double ucb1(TreeNode node) {
-        //1.1 as the ucb constant
-        final double c = 1.1;
-        int reward = node.getReward();
-        int visitCount = node.getVisitsCount();
-        int parentVisitCount = node.getParent().getVisitsCount();
-        return AiUtils.safeDivide(reward, visitCount) + c * Math
-            .sqrt(AiUtils.safeDivide(Math.log(parentVisitCount), visitCount));
+    public static int[] parallelMonteCarloTreeSearch(int[][] chess, long hash) {
+        Background.addMessage("Doing parallel MCTS, please wait..");
+        rave = false;
+        Position rootPosition = new Position(chess);
+        if (isOpening(rootPosition)) {
+            return new int[] {7, 7, aiPieceType};
+        }
+
+        startSearch();
+        NodePool pool = sharedPool();
+        int root = reuseTree(pool, hash);
+        AtomicInteger iterations = new AtomicInteger();
+        Thread[] workers = new Thread[Math.max(threadCount, 1)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    search(pool, root, new Position(rootPosition), iterations, iterationBudget, VIRTUAL_LOSS, true);
+                }
+            }, "mcts-" + i);
+            workers[i].start();
+        }
+        joinAll(workers);
+        stopTimer();
+
+        addIterationMessage(iterations.get(), iterationBudget);
+        Background.addMessage("Threads: " + workers.length);
+        return bestMove(pool, root);
     }
 
     /**
-     * Selects the child node with the highest UCB value
+     * Entrance of root-parallel MCTS, each worker thread searches a tree of its own, the iterations are divided
+     * among the trees and the visits and rewards of the children of the roots are summed
      *
-     * @param children The child nodes
-     * @return The best node
+     * @param chess 2-dimensional array represents the chessboard
+     * @return Position of the next move
      */
-    private static TreeNode ucbSelection(List<TreeNode> children) {
-        double max = Double.NEGATIVE_INFINITY;
-        TreeNode best = null;
+    public static int[] rootParallelMonteCarloTreeSearch(int[][] chess) {
+        Background.addMessage("Doing root parallel MCTS, please wait..");
+        rave = false;
+        Position rootPosition = new Position(chess);
+        if (isOpening(rootPosition)) {
+            return new int[] {7, 7, aiPieceType};
+        }
 
-        for (TreeNode child : children) {
-            double ucbVal = ucb1(child);
-            if (ucbVal > max) {
-                max = ucbVal;
-                best = child;
+        startSearch();
+        int trees = Math.max(threadCount, 1);
+        if (rootPools.length != trees) {
+            rootPools = new NodePool[trees];
+            for (int i = 0; i < trees; i++) {
+                rootPools[i] = new NodePool(POOL_CAPACITY / trees);
             }
+        }
 
-            if (max == Double.POSITIVE_INFINITY) {
-                return best;
+        int iterationsPerTree = iterationBudget / trees;
+        AtomicInteger[] iterations = new AtomicInteger[trees];
+        Thread[] workers = new Thread[trees];
+        SplittableRandom seeds = new SplittableRandom();
+        for (int i = 0; i < workers.length; i++) {
+            NodePool pool = rootPools[i];
+            long seed = seeds.nextLong();
+            AtomicInteger treeIterations = new AtomicInteger();
+            iterations[i] = treeIterations;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    playouts.get().setSeed(seed);
+                    int root = pool.newRoot(aiPieceType * -1);
+                    //the lead of a child in one tree does not decide the summed statistics
+                    search(pool, root, new Position(rootPosition), treeIterations, iterationsPerTree, 0, false);
+                }
+            }, "mcts-root-" + i);
+            workers[i].start();
+        }
+        joinAll(workers);
+        stopTimer();
+
+        int iterationCount = 0;
+        for (AtomicInteger treeIterations : iterations) {
+            iterationCount += Math.min(treeIterations.get(), iterationsPerTree);
+        }
+        addIterationMessage(iterationCount, iterationsPerTree * trees);
+
+        //merges the statistics of the children of the roots by move, the root of every arena is node 0
+        boolean[] isRootChild = new boolean[Position.TILE_NUM];
+        int[] visits = new int[Position.TILE_NUM];
+        int[] rewards = new int[Position.TILE_NUM];
+        int[] proofs = new int[Position.TILE_NUM];
+        int rootVisits = 0;
+        int rootReward = 0;
+        for (NodePool pool : rootPools) {
+            rootVisits += pool.getVisits(0);
+            rootReward += pool.getReward(0);
+            int first = pool.getFirstChild(0);
+            for (int child = first; child < first + pool.getChildCount(0); child++) {
+                isRootChild[pool.getMove(child)] = true;
+                visits[pool.getMove(child)] += pool.getVisits(child);
+                rewards[pool.getMove(child)] += pool.getReward(child);
+                if (pool.getProof(child) != NodePool.UNKNOWN) {
+                    proofs[pool.getMove(child)] = pool.getProof(child);
+                }
+            }
+        }
+
+        //only the children of a root are candidates, chosen like the best child of one tree, a move proven to win
+        //in one tree is played, a move proven to lose in one tree is played only if all of them are
+        int best = -1;
+        for (int index = 0; index < Position.TILE_NUM; index++) {
+            if (!isRootChild[index]) {
+                continue;
+            }
+            if (proofs[index] == NodePool.WIN) {
+                best = index;
+                break;
+            }
+            boolean isLoss = proofs[index] == NodePool.LOSS;
+            if (best < 0 || proofs[best] == NodePool.LOSS && !isLoss
+                || (proofs[best] == NodePool.LOSS) == isLoss && visits[index] > visits[best]) {
+                best = index;
             }
         }
 
-        if (best == null) {
-            System.out.println(ucb1(children.get(0)));
+        int x = best < 0 ? -1 : Position.toX(best);
+        int y = best < 0 ? -1 : Position.toY(best);
+        System.out.println(rootReward + "-" + rootVisits);
+        System.out.println(x + "===" + y);
+        if (best >= 0) {
+            System.out.println(visits[best] + " reward " + rewards[best]);
         }
-        return best;
+        Background.addMessage("Trees: " + trees);
+        return new int[] {x, y, aiPieceType};
     }
 
     /**
-     * Generates 10 child nodes for a parent node
-     * @param node Parent node
-     * @return  Child nodes
+     * Sets the number of worker threads of tree-parallel MCTS
+     *
+     * @param threads Number of threads
      */
-    private static List<TreeNode> generatesChildren(TreeNode node) {
-        List<TreeNode> children = new ArrayList<>();
+    public static void setThreadCount(int threads) {
+        threadCount = threads;
+    }
 
-        int nextTurnPlayer = node.getThisTurnPlayer() * -1;
-        int[][] chess = node.getChess();
+    /**
+     * Sets the maximum number of iterations of one search, the search also stops when the time budget is used up
+     *
+     * @param iterations Number of iterations
+     */
+    public static void setIterationBudget(int iterations) {
+        iterationBudget = iterations;
+    }
 
-        //Generates 10 child nodes
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 10);
-
-        for (int[] move : moves) {
-            int x = move[0];
-            int y = move[1];
-            int[][] nextChess = AiUtils.nextMoveChessboard(chess, x, y, nextTurnPlayer);
-            boolean isTerminal = GameStatusChecker.isFiveInLine(nextChess, x, y);
-
-            if(!isTerminal){
-                children.add(new TreeNode(true, nextTurnPlayer, x, y, nextChess, node));
-            }else{
-                backPropagation(node, 1, nextTurnPlayer);
-            }
-        }
+    /**
+     * Returns the number of visits of the root of the last serial or tree-parallel search
+     *
+     * @return Number of visits, 0 if there is no tree
+     */
+    public static int getRootVisits() {
+        return hasTree ? treePool.getVisits(0) : 0;
+    }
 
-        return children;
+    /**
+     * Checks whether the root of the last serial or tree-parallel search is proven
+     *
+     * @return A boolean indicates whether the result of the game is known from the root
+     */
+    public static boolean isRootProven() {
+        return hasTree && treePool.getProof(0) != NodePool.UNKNOWN;
     }
 
     /**
-     * Randomly choose a move
-     * @param chess The chessboard
-     * @return A randomly chosen move
+     * Starts the timer of a search and clears the stop flag
      */
-    private static PossibleMove getRandomMove(int[][] chess) {
-        List<PossibleMove> possibleMoves = generatesMoves(chess);
-        int size = possibleMoves.size();
+    private static void startSearch() {
+        stopped = false;
+        startTimer();
+    }
 
-        if (size == 0) {
-            System.out.println("Chess board full");
-            return null;
+    /**
+     * Runs iterations of one thread until the search is stopped or the root is proven, the thread drawing every
+     * {@value #CHECK_INTERVAL}th iteration checks the clock and the lead of the best child
+     *
+     * @param pool         The arena of the tree
+     * @param root         Index of the root
+     * @param position     The chessboard of the root, owned by the thread
+     * @param iterations   Number of iterations drawn by the threads searching the tree
+     * @param budget       Maximum number of iterations of the tree
+     * @param virtualLoss  Virtual loss added to the nodes on the path
+     * @param canStopEarly Whether the search stops when the best child of the root can no longer be overtaken
+     */
+    private static void search(NodePool pool, int root, Position position, AtomicInteger iterations, int budget,
+        int virtualLoss, boolean canStopEarly) {
+        long startTime = System.currentTimeMillis();
+        for (int done = iterations.getAndIncrement(); done < budget && !stopped; done = iterations.getAndIncrement()) {
+            if (pool.getProof(root) != NodePool.UNKNOWN || done % CHECK_INTERVAL == CHECK_INTERVAL - 1
+                && (isTimeUp() || canStopEarly && isDecided(pool, root, done, budget, startTime))) {
+                stopped = true;
+                break;
+            }
+            iteration(pool, root, position, virtualLoss);
         }
-
-        int randomIndex = ThreadLocalRandom.current().nextInt(0, size);
-        return possibleMoves.get(randomIndex);
     }
 
     /**
-     * Generates all possible legal game moves.
-     * @param chess The chessboard
-     * @return All possible moves.
+     * Checks whether the most visited child of the root leads the second one by more visits than the remaining
+     * iterations can give, the iterations left by the time budget are estimated from the rate so far
+     *
+     * @param pool      The arena of the tree
+     * @param root      Index of the root
+     * @param done      Number of iterations done
+     * @param budget    Maximum number of iterations
+     * @param startTime Wall-clock time in milliseconds when the search started
+     * @return A boolean indicates whether the most visited child is certain to be chosen
      */
-    private static List<PossibleMove> generatesMoves(int[][] chess) {
-        List<PossibleMove> possibleMoves = new ArrayList<>();
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                if (chess[i][j] == AiConst.EMPTY_STONE) {
-                    possibleMoves.add(new PossibleMove(i, j));
-                }
+    private static boolean isDecided(NodePool pool, int root, int done, int budget, long startTime) {
+        if (pool.isLeaf(root)) {
+            return false;
+        }
+        int first = 0;
+        int second = 0;
+        int firstChild = pool.getFirstChild(root);
+        for (int child = firstChild; child < firstChild + pool.getChildCount(root); child++) {
+            //a move proven to lose is never chosen
+            int visits = pool.getProof(child) == NodePool.LOSS ? 0 : pool.getVisits(child);
+            if (visits > first) {
+                second = first;
+                first = visits;
+            } else if (visits > second) {
+                second = visits;
             }
         }
-        return possibleMoves;
+
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(now - startTime, 1);
+        long remaining = Math.min(budget - done, done * Math.max(startTime + timeBudget - now, 0) / elapsed);
+        return first - second > remaining;
     }
 
     /**
-     * Place piece on the chessboard
-     * @param chess The chessboard
-     * @param move The location of placing place
-     * @param pieceType Type of placed piece
+     * Shows the number of iterations of a search
+     *
+     * @param iterations Number of iterations drawn by the threads
+     * @param budget     Maximum number of iterations
      */
-    private static void placePiece(int[][] chess, PossibleMove move, int pieceType) {
-        chess[move.getX()][move.getY()] = pieceType;
+    private static void addIterationMessage(int iterations, int budget) {
+        Background.addMessage("Iterations: " + Math.min(iterations, budget) + " of " + budget);
     }
 
-}
+    /**
+     * Returns the arena of serial and tree-parallel search, it is allocated by the first search
+     *
+     * @return The shared arena
+     */
+    private static NodePool sharedPool() {
+        if (treePool == null) {
+            treePool = new NodePool(POOL_CAPACITY);
+        }
+        return treePool;
+    }
 
-/**
- * This class is used to encapsulate the piece-placing location information
- *
- * @author Cirun Zhang
- * @version 1.0
- */
-class PossibleMove {
-    private int x;
-    private int y;
+    /**
+     * Prepares the root of a search in the shared arena, the subtree of the last search reached by the two moves
+     * played since is reused if it exists
+     *
+     * @param pool The shared arena
+     * @param hash Zobrist hash of the chessboard
+     * @return Index of the root
+     */
+    private static int reuseTree(NodePool pool, long hash) {
+        int node = hasTree && treePieceType == aiPieceType ? findPlayedNode(pool, hash) : NodePool.NONE;
+        hasTree = true;
+        treeHash = hash;
+        treePieceType = aiPieceType;
+        if (node == NodePool.NONE) {
+            return pool.newRoot(aiPieceType * -1);
+        }
 
-    PossibleMove(int x, int y) {
-        this.x = x;
-        this.y = y;
+        int root = pool.promote(node);
+        Background.addMessage("Reused nodes: " + pool.size() + " visits: " + pool.getVisits(root));
+        return root;
     }
 
-    public int getX() {
-        return x;
-    }
+    /**
+     * Finds the node of the last tree reached by a move of the AI and a reply of the opponent, the hash of every
+     * grandchild of the root is derived from the hash of the root and compared with the hash of the chessboard
+     *
+     * @param pool The shared arena, the root of the last tree is node 0
+     * @param hash Zobrist hash of the chessboard
+     * @return Index of the node, the root if the chessboard is unchanged, or {@link NodePool#NONE} if the
+     * chessboard does not follow from the last tree
+     */
+    private static int findPlayedNode(NodePool pool, long hash) {
+        if (hash == treeHash) {
+            //the same chessboard is searched again
+            return 0;
+        }
+        if (pool.isLeaf(0)) {
+            return NodePool.NONE;
+        }
 
-    public void setX(int x) {
-        this.x = x;
+        int first = pool.getFirstChild(0);
+        for (int child = first; child < first + pool.getChildCount(0); child++) {
+            if (pool.isLeaf(child)) {
+                continue;
+            }
+            long childHash = treeHash ^ Zobrist.key(pool.getMove(child), aiPieceType);
+            int firstReply = pool.getFirstChild(child);
+            for (int reply = firstReply; reply < firstReply + pool.getChildCount(child); reply++) {
+                if ((childHash ^ Zobrist.key(pool.getMove(reply), aiPieceType * -1)) == hash) {
+                    return reply;
+                }
+            }
+        }
+        return NodePool.NONE;
     }
 
-    public int getY() {
-        return y;
+    /**
+     * Waits for the worker threads to finish
+     *
+     * @param workers The worker threads
+     */
+    private static void joinAll(Thread[] workers) {
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
-    public void setY(int y) {
-        this.y = y;
+    /**
+     * Returns the move of the most visited child of the root
+     *
+     * @param pool The arena of the tree
+     * @param root Index of the root
+     * @return Position of the next move
+     */
+    private static int[] bestMove(NodePool pool, int root) {
+        int best = bestChild(pool, root);
+        int[] move = moveOf(pool, best);
+        if (pool.getProof(root) != NodePool.UNKNOWN) {
+            //the root is the move of the opponent
+            Background.addMessage(pool.getProof(root) == NodePool.LOSS ? "Proven win" : "Proven loss");
+        }
+        System.out.println(pool.getReward(root) + "-" + pool.getVisits(root));
+        System.out.println(move[0] + "===" + move[1]);
+        System.out.println(best == NodePool.NONE ? 0 : pool.getVisits(best));
+        Background.addMessage("Tree nodes: " + pool.size());
+        return new int[] {move[0], move[1], aiPieceType};
     }
-}
-
-/**
- * This class represents the node of MCT
- *
- * @author Cirun Zhang
- * @version 1.0
- */
-class TreeNode {
-    private boolean isLeaf;
-
-    private boolean isTerminal;
-
-    private int thisTurnPlayer;
-
-    private int x;
 
-    private int y;
-
-    private int[][] chess;
-
-    private int reward = 0;
-
-    private int visitsCount = 0;
-
-    private TreeNode parent;
-
-    private List<TreeNode> children;
-
-    public TreeNode(int[][] chess) {
-        this.chess = chess;
+    /**
+     * Returns the coordinates of the move leading to a node
+     *
+     * @param pool The arena of the tree
+     * @param node Index of the node
+     * @return X-coordinate and y-coordinate of the move, -1 if there is no node
+     */
+    private static int[] moveOf(NodePool pool, int node) {
+        if (node == NodePool.NONE) {
+            return new int[] {-1, -1};
+        }
+        return new int[] {Position.toX(pool.getMove(node)), Position.toY(pool.getMove(node))};
     }
 
-    public TreeNode(boolean isLeaf, int[][] chess) {
-        this.isLeaf = isLeaf;
-        this.chess = chess;
+    /**
+     * Returns the child of a node to play, a child proven to win, otherwise the most visited child not proven to
+     * lose, or the most visited child if all of them are proven to lose
+     *
+     * @param pool The arena of the tree
+     * @param node Index of the parent node
+     * @return Index of the chosen child, or {@link NodePool#NONE} if the node has no child
+     */
+    private static int bestChild(NodePool pool, int node) {
+        int best = NodePool.NONE;
+        int first = pool.getFirstChild(node);
+        for (int child = first; child < first + pool.getChildCount(node); child++) {
+            if (pool.getProof(child) == NodePool.WIN) {
+                return child;
+            }
+            if (best == NodePool.NONE || pool.getProof(best) == NodePool.LOSS && pool.getProof(child) != NodePool.LOSS
+                || pool.getProof(child) == pool.getProof(best) && pool.getVisits(child) > pool.getVisits(best)) {
+                best = child;
+            }
+        }
+        return best;
     }
 
-    public TreeNode(boolean isLeaf, int thisTurnPlayer, int x, int y, int[][] chess, TreeNode parent) {
-        this.isLeaf = isLeaf;
-        this.thisTurnPlayer = thisTurnPlayer;
-        this.x = x;
-        this.y = y;
-        this.chess = chess;
-        this.parent = parent;
-    }
+    /**
+     * Runs one iteration of MCTS in four stages, selection, expansion, simulation and back propagation, the nodes
+     * selected are recorded in the path of the thread and the moves played on the chessboard are taken back at the
+     * end
+     *
+     * @param pool        The arena of the tree
+     * @param root        Index of the root
+     * @param position    The chessboard of the root
+     * @param virtualLoss Virtual loss added to the nodes on the path until the result is propagated
+     */
+    private static void iteration(NodePool pool, int root, Position position, int virtualLoss) {
+        int moveCount = position.getMoveCount();
+        int[] path = paths.get();
+        path[0] = root;
+        pool.addVirtualLoss(root, virtualLoss);
+
+        //selection
+        int length = selection(pool, path, 1, position, virtualLoss);
+
+        //expansion, a leaf being expanded by another worker is rolled out instead of waited for
+        int leaf = path[length - 1];
+        if (pool.isLeaf(leaf) && pool.getVisits(leaf) != 0 && pool.claimExpansion(leaf)) {
+            if (!generatesChildren(pool, leaf, position)) {
+                //the arena is full
+                pool.releaseExpansion(leaf);
+            } else if (!prove(pool, path, length)) {
+                length = selection(pool, path, length, position, virtualLoss);
+            }
+        }
 
-    public boolean isLeaf() {
-        return isLeaf;
-    }
+        int node = path[length - 1];
+        if (!pool.isLeaf(node) && pool.getProof(node) == NodePool.UNKNOWN) {
+            //the children of the node have been proven by other workers meanwhile
+            prove(pool, path, length);
+        }
+        if (hasOnlyLostChildren(pool, node) && pool.claimWidening(node)) {
+            //every reply expanded so far loses, the replies left out are added so the node can be searched on
+            if (!widensChildren(pool, node, position)) {
+                pool.releaseWidening(node);
+            } else if (!prove(pool, path, length)) {
+                length = selection(pool, path, length, position, virtualLoss);
+                node = path[length - 1];
+            }
+        }
+        int proof = pool.getProof(node);
+        if (proof != NodePool.UNKNOWN) {
+            //the result of a proven node is known without simulation
+            int winner = proof == NodePool.WIN ? pool.getPlayer(node) : pool.getPlayer(node) * -1;
+            backPropagation(pool, path, length, 1, winner, virtualLoss);
+        } else if (pool.isLeaf(node)) {
+            //simulation and back propagation
+            Playout playout = playouts.get();
+            int winner = playout.play(position, pool.getPlayer(node));
+            backPropagation(pool, path, length, 1, winner, virtualLoss);
+            if (rave) {
+                amafPropagation(pool, path, length, playout, winner);
+            }
+        } else if (hasOnlyLostChildren(pool, node)) {
+            //the node cannot be widened as the arena is full, every known reply loses
+            backPropagation(pool, path, length, 1, pool.getPlayer(node), virtualLoss);
+        } else {
+            //the node has no child to select
+            removeVirtualLoss(pool, path, length, virtualLoss);
+        }
 
-    public void setLeaf(boolean leaf) {
-        isLeaf = leaf;
+        while (position.getMoveCount() > moveCount) {
+            position.unmakeMove();
+        }
     }
 
-    public int[][] getChess() {
-        return chess;
+    /**
+     * Selection process of MCTS, descends from the last node of the path by the highest UCB value until a leaf or
+     * a node without children is reached
+     *
+     * @param pool        The arena of the tree
+     * @param path        Nodes selected from the root
+     * @param length      Number of nodes in the path
+     * @param position    The chessboard of the last node, the moves of the selected nodes are played on it
+     * @param virtualLoss Virtual loss added to the selected nodes
+     * @return Number of nodes in the path
+     */
+    private static int selection(NodePool pool, int[] path, int length, Position position, int virtualLoss) {
+        int node = path[length - 1];
+        while (!pool.isLeaf(node)) {
+            int best = ucbSelection(pool, node);
+            if (best == NodePool.NONE) {
+                break;
+            }
+            int move = pool.getMove(best);
+            position.makeMove(Position.toX(move), Position.toY(move), pool.getPlayer(best));
+            pool.addVirtualLoss(best, virtualLoss);
+            path[length++] = best;
+            node = best;
+        }
+        return length;
     }
 
-    public void setChess(int[][] chess) {
-        this.chess = chess;
+    /**
+     * Proves the nodes of a path bottom up from the last node, until a node cannot be proven from its children
+     *
+     * @param pool   The arena of the tree
+     * @param path   Nodes selected from the root
+     * @param length Number of nodes in the path
+     * @return A boolean indicates whether the last node is proven
+     */
+    private static boolean prove(NodePool pool, int[] path, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            int proof = proofOfChildren(pool, path[i]);
+            if (proof == NodePool.UNKNOWN) {
+                return i < length - 1;
+            }
+            pool.setProof(path[i], proof);
+        }
+        return true;
     }
 
-    public int getReward() {
-        return reward;
+    /**
+     * Returns the proof of a node given by the proofs of its children, the children are the moves of the opponent
+     * of the player of the node
+     *
+     * @param pool The arena of the tree
+     * @param node Index of the node
+     * @return A loss if a child is a proven win, a win if the children cover every move and all of them are
+     *         proven losses, unknown otherwise
+     */
+    private static int proofOfChildren(NodePool pool, int node) {
+        int count = pool.getChildCount(node);
+        if (pool.isLeaf(node) || count == 0) {
+            return NodePool.UNKNOWN;
+        }
+        int losses = 0;
+        int first = pool.getFirstChild(node);
+        for (int child = first; child < first + count; child++) {
+            int proof = pool.getProof(child);
+            if (proof == NodePool.WIN) {
+                return NodePool.LOSS;
+            }
+            if (proof == NodePool.LOSS) {
+                losses++;
+            }
+        }
+        //the children cut to the best few moves do not prove that every reply loses
+        return losses == count && pool.isComplete(node) ? NodePool.WIN : NodePool.UNKNOWN;
     }
 
-    public void setReward(int reward) {
-        this.reward = reward;
+    /**
+     * Checks whether a node is not proven although every one of its children is a proven loss, which happens when
+     * the children do not cover every move
+     *
+     * @param pool The arena of the tree
+     * @param node Index of the node
+     * @return A boolean indicates whether the node has children and all of them are proven losses
+     */
+    private static boolean hasOnlyLostChildren(NodePool pool, int node) {
+        int count = pool.getChildCount(node);
+        if (pool.isLeaf(node) || count == 0 || pool.getProof(node) != NodePool.UNKNOWN) {
+            return false;
+        }
+        int first = pool.getFirstChild(node);
+        for (int child = first; child < first + count; child++) {
+            if (pool.getProof(child) != NodePool.LOSS) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    public int getVisitsCount() {
-        return visitsCount;
+    /**
+     * Back propagation process of MCTS
+     *
+     * @param pool         The arena of the tree
+     * @param path         Nodes selected from the root
+     * @param length       Number of nodes in the path
+     * @param reward       The reward for winning nodes
+     * @param winningPiece Indicates which player wins
+     * @param virtualLoss  Virtual loss removed from the nodes
+     */
+    private static void backPropagation(NodePool pool, int[] path, int length, int reward, int winningPiece,
+        int virtualLoss) {
+        for (int i = length - 1; i >= 0; i--) {
+            int node = path[i];
+            pool.update(node, pool.getPlayer(node) == winningPiece ? reward : -1, virtualLoss);
+        }
     }
 
-    public void setVisitsCount(int visitsCount) {
-        this.visitsCount = visitsCount;
-    }
+    /**
+     * Updates the AMAF statistics after a playout, from the last node of the path up. A child of a node on the path
+     * is updated if its move is played later in the iteration, in the tree below the node or in the playout, by the
+     * player of the child
+     *
+     * @param pool         The arena of the tree
+     * @param path         Nodes selected from the root
+     * @param length       Number of nodes in the path
+     * @param playout      The playout from the last node of the path
+     * @param winningPiece Indicates which player wins
+     */
+    private static void amafPropagation(NodePool pool, int[] path, int length, Playout playout, int winningPiece) {
+        int[] players = amafPlayers.get();
+        int player = pool.getPlayer(path[length - 1]);
+        for (int i = 0; i < playout.getPlayedCount(); i++) {
+            player *= -1;
+            players[playout.getPlayed(i)] = player;
+        }
 
-    public TreeNode getParent() {
-        return parent;
-    }
+        for (int i = length - 1; i >= 0; i--) {
+            int node = path[i];
+            if (!pool.isLeaf(node)) {
+                int first = pool.getFirstChild(node);
+                for (int child = first; child < first + pool.getChildCount(node); child++) {
+                    int childPlayer = pool.getPlayer(child);
+                    if (players[pool.getMove(child)] == childPlayer) {
+                        pool.updateAmaf(child, childPlayer == winningPiece ? 1 : -1);
+                    }
+                }
+            }
+            if (i > 0) {
+                players[pool.getMove(node)] = pool.getPlayer(node);
+            }
+        }
 
-    public void setParent(TreeNode parent) {
-        this.parent = parent;
+        //clears the tiles of the iteration only
+        for (int i = 0; i < playout.getPlayedCount(); i++) {
+            players[playout.getPlayed(i)] = AiConst.EMPTY_STONE;
+        }
+        for (int i = 1; i < length; i++) {
+            players[pool.getMove(path[i])] = AiConst.EMPTY_STONE;
+        }
     }
 
-    public List<TreeNode> getChildren() {
-        return children;
+    /**
+     * Removes the virtual loss from the nodes of a path when an iteration ends without a result
+     *
+     * @param pool        The arena of the tree
+     * @param path        Nodes selected from the root
+     * @param length      Number of nodes in the path
+     * @param virtualLoss Virtual loss added to the nodes
+     */
+    private static void removeVirtualLoss(NodePool pool, int[] path, int length, int virtualLoss) {
+        for (int i = 0; i < length; i++) {
+            pool.addVirtualLoss(path[i], -virtualLoss);
+        }
     }
 
-    public void setChildren(List<TreeNode> children) {
-        this.children = children;
+    /**
+     * UCB-1 function of MCTS, it is used to balance the visit count and win count. The virtual losses count as
+     * visits lost. With RAVE a child with AMAF statistics is valued by its AMAF mean blended with its mean reward,
+     * so an unvisited child is ranked by its AMAF mean instead of being selected before its brothers
+     *
+     * @param pool   The arena of the tree
+     * @param node   Calculates the UCB value for this particular node
+     * @param parent The parent of the node
+     * @return UCB value
+     */
+    private static double ucb1(NodePool pool, int node, int parent) {
+        //1.1 as the ucb constant
+        final double c = 1.1;
+        int virtualLoss = pool.getVirtualLoss(node);
+        int reward = pool.getReward(node) - virtualLoss;
+        int visitCount = pool.getVisits(node) + virtualLoss;
+        int parentVisitCount = pool.getVisits(parent) + pool.getVirtualLoss(parent);
+        int amafVisitCount = pool.getAmafVisits(node);
+        if (rave && amafVisitCount > 0) {
+            double beta = Math.sqrt(RAVE_EQUIVALENCE / (3.0 * visitCount + RAVE_EQUIVALENCE));
+            double mean = visitCount == 0 ? 0 : (double)reward / visitCount;
+            double amafMean = (double)pool.getAmafReward(node) / amafVisitCount;
+            return (1 - beta) * mean + beta * amafMean + c * Math.sqrt(Math.log(parentVisitCount) / (visitCount + 1));
+        }
+        return AiUtils.safeDivide(reward, visitCount) + c * Math
+            .sqrt(AiUtils.safeDivide(Math.log(parentVisitCount), visitCount));
     }
 
-    public boolean isTerminal() {
-        return isTerminal;
-    }
+    /**
+     * Selects the child node with the highest UCB value, the proven children are skipped
+     *
+     * @param pool   The arena of the tree
+     * @param parent The expanded node
+     * @return Index of the best node, or {@link NodePool#NONE} if there is none
+     */
+    private static int ucbSelection(NodePool pool, int parent) {
+        double max = Double.NEGATIVE_INFINITY;
+        int best = NodePool.NONE;
+        int first = pool.getFirstChild(parent);
+        int count = pool.getChildCount(parent);
 
-    public void setTerminal(boolean terminal) {
-        isTerminal = terminal;
-    }
+        for (int child = first; child < first + count; child++) {
+            if (pool.getProof(child) != NodePool.UNKNOWN) {
+                continue;
+            }
+            double ucbVal = ucb1(pool, child, parent);
+            if (ucbVal > max) {
+                max = ucbVal;
+                best = child;
+            }
 
-    public int getThisTurnPlayer() {
-        return thisTurnPlayer;
+            if (max == Double.POSITIVE_INFINITY) {
+                return best;
+            }
+        }
+        return best;
     }
 
-    public void setThisTurnPlayer(int thisTurnPlayer) {
-        this.thisTurnPlayer = thisTurnPlayer;
-    }
+    /**
+     * Generates 10 child nodes for a parent node, the children winning the game are proven wins. The node is marked
+     * complete only if no candidate move was left out
+     *
+     * @param pool     The arena of the tree
+     * @param node     Parent node, claimed by the calling worker
+     * @param position The chessboard of the parent node, restored on return
+     * @return A boolean indicates whether the children are published, false if the arena is full
+     */
+    private static boolean generatesChildren(NodePool pool, int node, Position position) {
+        int nextTurnPlayer = pool.getPlayer(node) * -1;
 
-    public int getX() {
-        return x;
-    }
+        //Generates 10 child nodes
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 10, childMoves.get());
+        int first = pool.allocate(moves.size());
+        if (first == NodePool.NONE) {
+            return false;
+        }
 
-    public void setX(int x) {
-        this.x = x;
-    }
+        for (int i = 0; i < moves.size(); i++) {
+            initChild(pool, first + i, node, moves.getIndex(i), nextTurnPlayer, position);
+        }
 
-    public int getY() {
-        return y;
+        pool.setChildren(node, first, moves.size(), moves.size() == position.getCandidateCount());
+        return true;
     }
 
-    public void setY(int y) {
-        this.y = y;
-    }
+    /**
+     * Replaces the children of a node by a block holding every candidate move, the old children are copied into
+     * the block without their subtrees and the other moves are added as new leaves
+     *
+     * @param pool     The arena of the tree
+     * @param node     Parent node, its widening claimed by the calling worker
+     * @param position The chessboard of the parent node, restored on return
+     * @return A boolean indicates whether the new children are published, false if the arena is full
+     */
+    private static boolean widensChildren(NodePool pool, int node, Position position) {
+        int nextTurnPlayer = pool.getPlayer(node) * -1;
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, Position.TILE_NUM, childMoves.get());
+        int first = pool.allocate(moves.size());
+        if (first == NodePool.NONE) {
+            return false;
+        }
 
-    public void increaseReward(int reward) {
-        this.reward += reward;
+        int oldFirst = pool.getFirstChild(node);
+        int oldCount = pool.getChildCount(node);
+        for (int i = 0; i < moves.size(); i++) {
+            int old = oldFirst;
+            while (old < oldFirst + oldCount && pool.getMove(old) != moves.getIndex(i)) {
+                old++;
+            }
+            if (old < oldFirst + oldCount) {
+                pool.copyNode(old, first + i, node);
+            } else {
+                initChild(pool, first + i, node, moves.getIndex(i), nextTurnPlayer, position);
+            }
+        }
+
+        pool.setChildren(node, first, moves.size(), true);
+        return true;
     }
 
-    public void increaseVisitCount() {
-        this.visitsCount += 1;
+    /**
+     * Initialises a new child node, it is a proven win if its move makes five in a line
+     *
+     * @param pool     The arena of the tree
+     * @param child    Index of the allocated child
+     * @param parent   Index of the parent node
+     * @param move     Bit index of the move of the child
+     * @param player   Piece type of the player of the move
+     * @param position The chessboard of the parent node, restored on return
+     */
+    private static void initChild(NodePool pool, int child, int parent, int move, int player, Position position) {
+        int x = Position.toX(move);
+        int y = Position.toY(move);
+        position.makeMove(x, y, player);
+        boolean isTerminal = GameStatusChecker.isFiveInLine(position, x, y);
+        position.unmakeMove();
+
+        pool.initNode(child, parent, move, player);
+        if (isTerminal) {
+            pool.setProof(child, NodePool.WIN);
+        }
     }
 }
@@ -0,0 +1,64 @@
+package ai;
+
+import ai.board.MoveList;
+
+import java.util.Arrays;
+
+/**
+ * This class holds the state of one search thread, every thread searches its own chessboard with its own move
+ * lists and counters
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+class SearchState {
+    /**
+     * Depth of the leaves of the running iteration
+     */
+    int depthLimit;
+
+    /**
+     * Depth of the leaves of the deepest completed iteration
+     */
+    int completedDepth;
+
+    /**
+     * Number of searched nodes
+     */
+    int nodes;
+
+    /**
+     * Number of cutoffs by the transposition table
+     */
+    int usage;
+
+    /**
+     * Best move found at the root of the last search
+     */
+    Node bestMove;
+
+    /**
+     * Move lists reused by the search, one for each depth of the search tree
+     */
+    private MoveList[] moveLists = new MoveList[0];
+
+    SearchState(int depthLimit) {
+        this.depthLimit = depthLimit;
+    }
+
+    /**
+     * Returns the move list of a depth of the search tree, the list is allocated once and reused afterwards
+     *
+     * @param depth Depth of the node
+     * @return The move list of the depth
+     */
+    MoveList moveList(int depth) {
+        if (depth >= moveLists.length) {
+            moveLists = Arrays.copyOf(moveLists, depth + 1);
+        }
+        if (moveLists[depth] == null) {
+            moveLists[depth] = new MoveList();
+        }
+        return moveLists[depth];
+    }
+}
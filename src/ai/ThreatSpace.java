@@ -1,11 +1,12 @@
 package ai;
 
+import ai.board.Position;
 import ai.constant.AiConst;
-import ai.utility.AiUtils;
 import ai.utility.ChessboardScanUtils;
+import ai.utility.LinePatternTable;
+import ai.utility.PatternMatcher;
 import gui.Background;
 import gui.Chessboard;
-import gui.constant.GuiConst;
 
 import java.util.ArrayList;
 
@@ -21,9 +22,99 @@ public class ThreatSpace extends Agent {
      */
     private static ArrayList<int[]> threatSequence = new ArrayList<>(2);
 
+    /**
+     * Rows which make an empty tile('t') a gain square
+     */
+    private static final String[] POTENTIAL_THREATS =
+        {AiConst.POTENTIAL_THREAT_A, AiConst.POTENTIAL_THREAT_B, AiConst.POTENTIAL_THREAT_C,
+            AiConst.POTENTIAL_THREAT_D, AiConst.POTENTIAL_THREAT_E, AiConst.POTENTIAL_THREAT_F,
+            AiConst.POTENTIAL_THREAT_G, AiConst.POTENTIAL_THREAT_H, AiConst.POTENTIAL_THREAT_I};
+
+    /**
+     * Rows which make two threat moves('t') dependent
+     */
+    private static final String[] DEPENDENT_THREATS =
+        {AiConst.DEPENDENT_THREAT_A, AiConst.DEPENDENT_THREAT_B, AiConst.DEPENDENT_THREAT_C,
+            AiConst.DEPENDENT_THREAT_D, AiConst.DEPENDENT_THREAT_E, AiConst.DEPENDENT_THREAT_F,
+            AiConst.DEPENDENT_THREAT_G, AiConst.DEPENDENT_THREAT_H, AiConst.DEPENDENT_THREAT_I,
+            AiConst.DEPENDENT_THREAT_J, AiConst.DEPENDENT_THREAT_K, AiConst.DEPENDENT_THREAT_L,
+            AiConst.DEPENDENT_THREAT_M, AiConst.DEPENDENT_THREAT_O, AiConst.DEPENDENT_THREAT_P,
+            AiConst.DEPENDENT_THREAT_Q, AiConst.DEPENDENT_THREAT_R, AiConst.DEPENDENT_THREAT_S,
+            AiConst.DEPENDENT_THREAT_T, AiConst.DEPENDENT_THREAT_U, AiConst.DEPENDENT_THREAT_V,
+            AiConst.DEPENDENT_THREAT_W, AiConst.DEPENDENT_THREAT_X, AiConst.DEPENDENT_THREAT_Y,
+            AiConst.DEPENDENT_THREAT_Z, AiConst.DEPENDENT_THREAT_AA, AiConst.DEPENDENT_THREAT_AB,
+            AiConst.DEPENDENT_THREAT_AC, AiConst.DEPENDENT_THREAT_AD, AiConst.DEPENDENT_THREAT_AE,
+            AiConst.DEPENDENT_THREAT_AF, AiConst.DEPENDENT_THREAT_AG, AiConst.DEPENDENT_THREAT_AH,
+            AiConst.DEPENDENT_THREAT_AI};
+
+    /**
+     * Rows which contain a threat
+     */
+    private static final String[] ROW_THREATS =
+        {AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_A, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_B,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_C, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_D,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_E, AiConst.IMPLICATE_THREE_A, AiConst.IMPLICATE_THREE_B,
+            AiConst.IMPLICATE_THREE_C, AiConst.IMPLICATE_THREE_D};
+
+    /**
+     * Rows of a defensive move('t') grouped by priority, lower rank defends first
+     */
+    private static final String[][] DEFENSE_THREATS =
+        {{AiConst.DEFENSE_THREAT_A1, AiConst.DEFENSE_THREAT_A2}, {AiConst.DEFENSE_THREAT_B1, AiConst.DEFENSE_THREAT_B2},
+            {AiConst.DEFENSE_THREAT_C1, AiConst.DEFENSE_THREAT_C2, AiConst.DEFENSE_THREAT_C3,
+                AiConst.DEFENSE_THREAT_C4, AiConst.DEFENSE_THREAT_C5, AiConst.DEFENSE_THREAT_C6},
+            {AiConst.DEFENSE_THREAT_D1, AiConst.DEFENSE_THREAT_D2}};
+
+    /**
+     * Rank of the moves which do not defend the threat
+     */
+    private static final int NO_DEFENSE = DEFENSE_THREATS.length;
+
+    /**
+     * Pattern classes of the threat matcher, the defensive patterns take one class per rank starting from DEFENSE
+     */
+    private static final int POTENTIAL = 0;
+
+    private static final int DEPENDENT = 1;
+
+    private static final int ROW = 2;
+
+    private static final int DEFENSE = 3;
+
+    /**
+     * Matcher of all the patterns above, every row is scanned once no matter which patterns are checked
+     */
+    private static final PatternMatcher THREAT_MATCHER = buildThreatMatcher();
+
     private ThreatSpace() {
     }
 
+    /**
+     * Compiles the pattern classes of threat space search into one matcher
+     *
+     * @return The matcher
+     */
+    private static PatternMatcher buildThreatMatcher() {
+        String[][] classes = new String[DEFENSE + DEFENSE_THREATS.length][];
+        classes[POTENTIAL] = POTENTIAL_THREATS;
+        classes[DEPENDENT] = DEPENDENT_THREATS;
+        classes[ROW] = ROW_THREATS;
+        System.arraycopy(DEFENSE_THREATS, 0, classes, DEFENSE, DEFENSE_THREATS.length);
+        return new PatternMatcher(classes);
+    }
+
+    /**
+     * Checks whether a row of pieces contains a pattern of a class
+     *
+     * @param row          A sequence of pieces
+     * @param length       Number of pieces in the sequence
+     * @param patternClass Class of the patterns
+     * @return A boolean indicates whether a pattern is found or not
+     */
+    private static boolean matches(byte[] row, int length, int patternClass) {
+        return (THREAT_MATCHER.match(row, length) & (1 << patternClass)) != 0;
+    }
+
     /**
      * The entrance of threat space search
      *
@@ -31,12 +122,15 @@ public class ThreatSpace extends Agent {
      * @return Coordinates of the best next AI move
      */
     public static int[] startThreatSpaceSearch(int[][] chess) {
-        if (detectThreats(chess, aiPieceType)) {
+        Position position = new Position(chess);
+        //one row of pieces shared by all the scans of this search
+        byte[] row = new byte[ChessboardScanUtils.ROW_LENGTH];
+        if (detectThreats(position, aiPieceType, row)) {
             //Background.addMessage("emergent");
             return MinimaxAbp.startAlphaBetaPruningWithSort(chess);
         }
         if (!threatSequence.isEmpty()) {
-            if (isMoveValid(threatSequence.get(0), chess)) {
+            if (isMoveValid(threatSequence.get(0), position)) {
                 System.out.println("Wining sequence found, second move");
                 Background.addMessage("Wining sequence found, second move");
                 Background.addMessage("---------------------------------");
@@ -47,7 +141,7 @@ public class ThreatSpace extends Agent {
                 return MinimaxAbp.startAlphaBetaPruningWithSort(chess);
             }
 
-        } else if (threatSpaceSearch(chess, 0, -1, -1)) {
+        } else if (threatSpaceSearch(position, 0, -1, -1, row)) {
             Background.addMessage("---------------------------------");
             Background.addMessage("Wining sequence found, first move");
             System.out.println("Wining sequence found, first move");
@@ -63,13 +157,15 @@ public class ThreatSpace extends Agent {
      * Scans each possible gain squares recursively, if it forms a wining sequence with one of
      * the dependent child node, store the wining sequence and return
      *
-     * @param chess       The chessboard
+     * @param position    The chessboard, restored to its original state on return
      * @param depth       Current depth of the search tree
      * @param lastThreatX X-coordinate of the last threat move
      * @param lastThreatY Y-coordinate of the last threat move
+     * @param row         Array used for holding one row of pieces
      * @return Whether the wining sequence is found or not
      */
-    public static boolean threatSpaceSearch(int[][] chess, int depth, int lastThreatX, int lastThreatY) {
+    public static boolean threatSpaceSearch(Position position, int depth, int lastThreatX, int lastThreatY,
+        byte[] row) {
         //Represent wining sequence is found or not
         boolean success = false;
         if (depth >= 2) {
@@ -77,25 +173,29 @@ public class ThreatSpace extends Agent {
             return false;
         }
 
-        //for each empty tiles
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                int threatDirection;
-
-                if (chess[i][j] == 0 && ((threatDirection = detectPotentialThreatWithDirection(i, j, chess))
-                    != AiConst.NO_THREAT)) {
-                    if (detectWiningThreatSequence(i, j, lastThreatX, lastThreatY, chess)) {
-                        threatSequence.add(new int[] {lastThreatX, lastThreatY, aiPieceType});
-                        threatSequence.add(new int[] {i, j, aiPieceType});
-                        return true;
-                    } else {
-                        //NOTE: | or || do effect the recursion
-                        //lazy Operator(||) would stop the recursion after the first wining sequence is found.
-                        int[][] nextChess = AiUtils.nextMoveChessboard(chess, i, j, aiPieceType);
-                        //Defense the threat.
-                        defenseSimulation(nextChess, i, j, aiPieceType, threatDirection);
-
-                        success = success || threatSpaceSearch(nextChess, depth + 1, i, j);
+        //for each candidate tiles, gain squares are always close to other pieces
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            int i = Position.toX(index);
+            int j = Position.toY(index);
+            int threatDirection = detectPotentialThreatWithDirection(i, j, position, row);
+
+            if (threatDirection != AiConst.NO_THREAT) {
+                if (detectWiningThreatSequence(i, j, lastThreatX, lastThreatY, position, row)) {
+                    threatSequence.add(new int[] {lastThreatX, lastThreatY, aiPieceType});
+                    threatSequence.add(new int[] {i, j, aiPieceType});
+                    return true;
+                } else {
+                    //NOTE: | or || do effect the recursion
+                    //lazy Operator(||) would stop the recursion after the first wining sequence is found.
+                    position.makeMove(i, j, aiPieceType);
+                    //Defense the threat.
+                    int defenseNum = defenseSimulation(position, i, j, aiPieceType, threatDirection, row);
+
+                    success = success || threatSpaceSearch(position, depth + 1, i, j, row);
+
+                    //Takes back the defensive moves and the threat move
+                    for (int k = 0; k <= defenseNum; k++) {
+                        position.unmakeMove();
                     }
                 }
             }
@@ -106,73 +206,60 @@ public class ThreatSpace extends Agent {
     /**
      * Detects whether the given moves form a wining sequence
      *
-     * @param x     X-coordinate of the second move
-     * @param y     Y-coordinate of the second move
-     * @param lastX X-coordinate of the first move
-     * @param lastY Y-coordinate of the first move
-     * @param chess The chessboard
+     * @param x        X-coordinate of the second move
+     * @param y        Y-coordinate of the second move
+     * @param lastX    X-coordinate of the first move
+     * @param lastY    Y-coordinate of the first move
+     * @param position The chessboard
+     * @param row      Array used for holding one row of pieces
      * @return A boolean indicates whether or not the given moves form a wining sequence
      */
-    private static boolean detectWiningThreatSequence(int x, int y, int lastX, int lastY, int[][] chess) {
+    private static boolean detectWiningThreatSequence(int x, int y, int lastX, int lastY, Position position,
+        byte[] row) {
+        int length;
         if (x == lastX) {
             //Same array, in the same row
-            String pieces = ChessboardScanUtils.scanHorizontal(chess, x, y, lastX, lastY, aiPieceType);
-            return isDependentThreat(pieces) && numOfNearbyThreats(x, y, chess, aiPieceType) >= 2;
-
+            length = ChessboardScanUtils.scanHorizontal(position, x, y, lastX, lastY, aiPieceType, row);
         } else if (y == lastY) {
             //Same index in different array, in the same column
-            String pieces = ChessboardScanUtils.scanVertical(chess, x, y, lastX, lastY, aiPieceType);
-            return isDependentThreat(pieces) && numOfNearbyThreats(x, y, chess, aiPieceType) >= 2;
-
+            length = ChessboardScanUtils.scanVertical(position, x, y, lastX, lastY, aiPieceType, row);
         } else if (x - lastX == -(y - lastY)) {
             //diagonal
-            String pieces = ChessboardScanUtils.scanDiagonal(chess, x, y, lastX, lastY, aiPieceType);
-            return isDependentThreat(pieces) && numOfNearbyThreats(x, y, chess, aiPieceType) >= 2;
+            length = ChessboardScanUtils.scanDiagonal(position, x, y, lastX, lastY, aiPieceType, row);
         } else if (x - lastX == y - lastY) {
             //anti-diagonal
-            String pieces = ChessboardScanUtils.scanAntiDiagonal(chess, x, y, lastX, lastY, aiPieceType);
-            return isDependentThreat(pieces) && numOfNearbyThreats(x, y, chess, aiPieceType) >= 2;
+            length = ChessboardScanUtils.scanAntiDiagonal(position, x, y, lastX, lastY, aiPieceType, row);
+        } else {
+            return false;
         }
-        return false;
+        return isDependentThreat(row, length) && numOfNearbyThreats(x, y, position, aiPieceType, row) >= 2;
     }
 
     /**
      * Determine whether or not a position is a gain square, if yes, return the direction of the threat
      *
-     * @param x     X coordinate of a empty tile
-     * @param y     Y coordinate of a empty tile
-     * @param chess The chessboard
+     * @param x        X coordinate of a empty tile
+     * @param y        Y coordinate of a empty tile
+     * @param position The chessboard
+     * @param row      Array used for holding one row of pieces
      * @return Direction of the threat
      */
-    private static int detectPotentialThreatWithDirection(int x, int y, int[][] chess) {
-        String vertical = ChessboardScanUtils.verticalAdjacentPieces10(chess, x, y, aiPieceType, 't');
-        String horizontal = ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, y, aiPieceType, 't');
-        String diagonal = ChessboardScanUtils.diagonalAdjacentPieces10(chess, x, y, aiPieceType, 't');
-        String antiDiagonal = ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x, y, aiPieceType, 't');
-
-        if (horizontal.contains(AiConst.POTENTIAL_THREAT_A) || horizontal.contains(AiConst.POTENTIAL_THREAT_B)
-            || horizontal.contains(AiConst.POTENTIAL_THREAT_C) || horizontal.contains(AiConst.POTENTIAL_THREAT_D)
-            || horizontal.contains(AiConst.POTENTIAL_THREAT_E) || horizontal.contains(AiConst.POTENTIAL_THREAT_F)
-            || horizontal.contains(AiConst.POTENTIAL_THREAT_G) || horizontal.contains(AiConst.POTENTIAL_THREAT_H)
-            || horizontal.contains(AiConst.POTENTIAL_THREAT_I)) {
+    private static int detectPotentialThreatWithDirection(int x, int y, Position position, byte[] row) {
+        int threat = ChessboardScanUtils.THREAT;
+        int length = ChessboardScanUtils.horizontalAdjacentPieces10(position, x, y, aiPieceType, threat, row);
+        if (matches(row, length, POTENTIAL)) {
             return AiConst.HORIZONTAL_THREAT;
-        } else if (vertical.contains(AiConst.POTENTIAL_THREAT_A) || vertical.contains(AiConst.POTENTIAL_THREAT_B)
-            || vertical.contains(AiConst.POTENTIAL_THREAT_C) || vertical.contains(AiConst.POTENTIAL_THREAT_D)
-            || vertical.contains(AiConst.POTENTIAL_THREAT_E) || vertical.contains(AiConst.POTENTIAL_THREAT_F)
-            || vertical.contains(AiConst.POTENTIAL_THREAT_G) || vertical.contains(AiConst.POTENTIAL_THREAT_H)
-            || vertical.contains(AiConst.POTENTIAL_THREAT_I)) {
+        }
+        length = ChessboardScanUtils.verticalAdjacentPieces10(position, x, y, aiPieceType, threat, row);
+        if (matches(row, length, POTENTIAL)) {
             return AiConst.VERTICAL_THREAT;
-        } else if (diagonal.contains(AiConst.POTENTIAL_THREAT_A) || diagonal.contains(AiConst.POTENTIAL_THREAT_B)
-            || diagonal.contains(AiConst.POTENTIAL_THREAT_C) || diagonal.contains(AiConst.POTENTIAL_THREAT_D)
-            || diagonal.contains(AiConst.POTENTIAL_THREAT_E) || diagonal.contains(AiConst.POTENTIAL_THREAT_F)
-            || diagonal.contains(AiConst.POTENTIAL_THREAT_G) || diagonal.contains(AiConst.POTENTIAL_THREAT_H)
-            || diagonal.contains(AiConst.POTENTIAL_THREAT_I)) {
+        }
+        length = ChessboardScanUtils.diagonalAdjacentPieces10(position, x, y, aiPieceType, threat, row);
+        if (matches(row, length, POTENTIAL)) {
             return AiConst.DIAGONAL_THREAT;
-        } else if (antiDiagonal.contains(AiConst.POTENTIAL_THREAT_A) || antiDiagonal
-            .contains(AiConst.POTENTIAL_THREAT_B) || antiDiagonal.contains(AiConst.POTENTIAL_THREAT_C) || antiDiagonal
-            .contains(AiConst.POTENTIAL_THREAT_D) || antiDiagonal.contains(AiConst.POTENTIAL_THREAT_E) || antiDiagonal
-            .contains(AiConst.POTENTIAL_THREAT_F) || antiDiagonal.contains(AiConst.POTENTIAL_THREAT_G) || antiDiagonal
-            .contains(AiConst.POTENTIAL_THREAT_H) || antiDiagonal.contains(AiConst.POTENTIAL_THREAT_I)) {
+        }
+        length = ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x, y, aiPieceType, threat, row);
+        if (matches(row, length, POTENTIAL)) {
             return AiConst.ANTIDIAGONAL_THREAT;
         }
         return AiConst.NO_THREAT;
@@ -181,28 +268,12 @@ public class ThreatSpace extends Agent {
     /**
      * Determine whether a threat is a dependent threat or not
      *
-     * @param threat Pieces of the threat
+     * @param row    Pieces of the threat
+     * @param length Number of pieces
      * @return A boolean indicate whether a threat is dependent or not
      */
-    private static boolean isDependentThreat(String threat) {
-        if (threat.contains(AiConst.DEPENDENT_THREAT_A) || threat.contains(AiConst.DEPENDENT_THREAT_B) || threat
-            .contains(AiConst.DEPENDENT_THREAT_C) || threat.contains(AiConst.DEPENDENT_THREAT_D) || threat
-            .contains(AiConst.DEPENDENT_THREAT_E) || threat.contains(AiConst.DEPENDENT_THREAT_F) || threat
-            .contains(AiConst.DEPENDENT_THREAT_G) || threat.contains(AiConst.DEPENDENT_THREAT_H) || threat
-            .contains(AiConst.DEPENDENT_THREAT_I) || threat.contains(AiConst.DEPENDENT_THREAT_J) || threat
-            .contains(AiConst.DEPENDENT_THREAT_K) || threat.contains(AiConst.DEPENDENT_THREAT_L) || threat
-            .contains(AiConst.DEPENDENT_THREAT_M) || threat.contains(AiConst.DEPENDENT_THREAT_O) || threat
-            .contains(AiConst.DEPENDENT_THREAT_P) || threat.contains(AiConst.DEPENDENT_THREAT_Q) || threat
-            .contains(AiConst.DEPENDENT_THREAT_R) || threat.contains(AiConst.DEPENDENT_THREAT_S) || threat
-            .contains(AiConst.DEPENDENT_THREAT_T) || threat.contains(AiConst.DEPENDENT_THREAT_U) || threat
-            .contains(AiConst.DEPENDENT_THREAT_V) || threat.contains(AiConst.DEPENDENT_THREAT_W) || threat
-            .contains(AiConst.DEPENDENT_THREAT_X) || threat.contains(AiConst.DEPENDENT_THREAT_Y) || threat
-            .contains(AiConst.DEPENDENT_THREAT_Z) || threat.contains(AiConst.DEPENDENT_THREAT_AA) || threat
-            .contains(AiConst.DEPENDENT_THREAT_AB) || threat.contains(AiConst.DEPENDENT_THREAT_AC) || threat
-            .contains(AiConst.DEPENDENT_THREAT_AD) || threat.contains(AiConst.DEPENDENT_THREAT_AE) || threat
-            .contains(AiConst.DEPENDENT_THREAT_AF) || threat.contains(AiConst.DEPENDENT_THREAT_AG) || threat
-            .contains(AiConst.DEPENDENT_THREAT_AH) || threat.contains(AiConst.DEPENDENT_THREAT_AI)) {
-
+    private static boolean isDependentThreat(byte[] row, int length) {
+        if (matches(row, length, DEPENDENT)) {
             System.out.println("Found Dependent Sequence.");
             return true;
         }
@@ -214,259 +285,261 @@ public class ThreatSpace extends Agent {
      *
      * @param x         X coordinate of the piece
      * @param y         Y coordinate of the piece
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param pieceType Piece type of AI
+     * @param row       Array used for holding one row of pieces
      * @return Number of the threats
      */
-    private static int numOfNearbyThreats(int x, int y, int[][] chess, int pieceType) {
-        String horizontal = ChessboardScanUtils.verticalAdjacentPieces10(chess, x, y, pieceType, '1');
-        String vertical = ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, y, pieceType, '1');
-        String diagonal = ChessboardScanUtils.diagonalAdjacentPieces10(chess, x, y, pieceType, '1');
-        String antiDiagonal = ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x, y, pieceType, '1');
-
-        return detectOneRowThreats(horizontal, chess) + detectOneRowThreats(vertical, chess) + detectOneRowThreats(
-            diagonal, chess) + detectOneRowThreats(antiDiagonal, chess);
+    private static int numOfNearbyThreats(int x, int y, Position position, int pieceType, byte[] row) {
+        int ally = LinePatternTable.ALLY;
+        int threats = detectOneRowThreats(row,
+            ChessboardScanUtils.verticalAdjacentPieces10(position, x, y, pieceType, ally, row));
+        threats += detectOneRowThreats(row,
+            ChessboardScanUtils.horizontalAdjacentPieces10(position, x, y, pieceType, ally, row));
+        threats += detectOneRowThreats(row,
+            ChessboardScanUtils.diagonalAdjacentPieces10(position, x, y, pieceType, ally, row));
+        threats += detectOneRowThreats(row,
+            ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x, y, pieceType, ally, row));
+        return threats;
     }
 
     /**
      * Return the number of threats in a row
      *
-     * @param pieces Pieces in a row
-     * @param chess  The chessboard
+     * @param row    Pieces in a row
+     * @param length Number of pieces in the row
      * @return Number of threats
      */
-    private static int detectOneRowThreats(String pieces, int[][] chess) {
-        if (pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_A) || pieces
-            .contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_B) || pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_C)
-            || pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_D) || pieces
-            .contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_E) || pieces.contains(AiConst.IMPLICATE_THREE_A) || pieces
-            .contains(AiConst.IMPLICATE_THREE_B) || pieces.contains(AiConst.IMPLICATE_THREE_C) || pieces
-            .contains(AiConst.IMPLICATE_THREE_D)) {
-            return 1;
-        }
-        return 0;
+    private static int detectOneRowThreats(byte[] row, int length) {
+        return matches(row, length, ROW) ? 1 : 0;
     }
 
     /**
      * Determine whether the threat move is valid or not
      *
      * @param threatMove AI threat move
-     * @param chess      The chessboard
+     * @param position   The chessboard
      * @return A boolean indicates the validity of the move
      */
-    private static boolean isMoveValid(int[] threatMove, int[][] chess) {
-        return chess[threatMove[0]][threatMove[1]] == AiConst.EMPTY_STONE;
+    private static boolean isMoveValid(int[] threatMove, Position position) {
+        return position.isEmpty(threatMove[0], threatMove[1]);
     }
 
     /**
-     * Defend the threat
+     * Defend the threat, the defensive moves are pushed to the move stack of the chessboard
      *
-     * @param chess           The chessboard
+     * @param position        The chessboard
      * @param x               X coordinate of the gain square
      * @param y               Y coordinate of the gain square
      * @param pieceType       Piece type of AI
      * @param threatDirection Direction of the threat
+     * @param row             Array used for holding one row of pieces
+     * @return Number of defensive moves made
      */
-    private static void defenseSimulation(int[][] chess, int x, int y, int pieceType, int threatDirection) {
+    private static int defenseSimulation(Position position, int x, int y, int pieceType, int threatDirection,
+        byte[] row) {
         switch (threatDirection) {
             case AiConst.HORIZONTAL_THREAT:
-                defenseHorizontalThreat(chess, x, y, pieceType);
-                break;
+                return defenseHorizontalThreat(position, x, y, pieceType, row);
             case AiConst.VERTICAL_THREAT:
-                defenseVerticalThreat(chess, x, y, pieceType);
-                break;
+                return defenseVerticalThreat(position, x, y, pieceType, row);
             case AiConst.DIAGONAL_THREAT:
-                defenseDiagonalThreat(chess, x, y, pieceType);
-                break;
+                return defenseDiagonalThreat(position, x, y, pieceType, row);
             case AiConst.ANTIDIAGONAL_THREAT:
-                defenseAntiDiagonalThreat(chess, x, y, pieceType);
-                break;
+                return defenseAntiDiagonalThreat(position, x, y, pieceType, row);
             default:
                 System.out.println("threatDirection " + threatDirection);
+                return 0;
         }
     }
 
     /**
      * Defend the threat in vertical direction
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the gain square
      * @param y         Y coordinate of the gain square
      * @param pieceType Piece type of AI
+     * @param row       Array used for holding one row of pieces
+     * @return Number of defensive moves made
      */
-    private static void defenseVerticalThreat(int[][] chess, int x, int y, int pieceType) {
+    private static int defenseVerticalThreat(Position position, int x, int y, int pieceType, byte[] row) {
+        int threat = ChessboardScanUtils.THREAT;
         ArrayList<ThreatMove> defensiveMoves = new ArrayList<>();
         ArrayList<ThreatMove> possibleMoves = new ArrayList<>();
 
         for (int i = x - 4; i < x; i++) {
-            if (Chessboard.validateArrayIndex(i) && chess[i][y] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.verticalAdjacentPieces10(chess, i, y, pieceType, 't');
-                possibleMoves.add(new ThreatMove(i, y, pieces));
+            if (Chessboard.validateArrayIndex(i) && position.isEmpty(i, y)) {
+                int length = ChessboardScanUtils.verticalAdjacentPieces10(position, i, y, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(i, y, defenseRank(row, length)));
             }
         }
 
         for (int i = x + 1; i < x + 5; i++) {
-            if (Chessboard.validateArrayIndex(i) && chess[i][y] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.verticalAdjacentPieces10(chess, i, y, pieceType, 't');
-                possibleMoves.add(new ThreatMove(i, y, pieces));
+            if (Chessboard.validateArrayIndex(i) && position.isEmpty(i, y)) {
+                int length = ChessboardScanUtils.verticalAdjacentPieces10(position, i, y, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(i, y, defenseRank(row, length)));
             }
         }
 
         generateDefensiveMoves(defensiveMoves, possibleMoves);
 
         for (ThreatMove move : defensiveMoves) {
-            chess[move.getX()][move.getY()] = pieceType * -1;
+            position.makeMove(move.getX(), move.getY(), pieceType * -1);
         }
-
+        return defensiveMoves.size();
     }
 
     /**
      * Defend the threat in horizontal direction
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the gain square
      * @param y         Y coordinate of the gain square
      * @param pieceType Piece type of AI
+     * @param row       Array used for holding one row of pieces
+     * @return Number of defensive moves made
      */
-    private static void defenseHorizontalThreat(int[][] chess, int x, int y, int pieceType) {
+    private static int defenseHorizontalThreat(Position position, int x, int y, int pieceType, byte[] row) {
+        int threat = ChessboardScanUtils.THREAT;
         ArrayList<ThreatMove> defensiveMoves = new ArrayList<>();
         ArrayList<ThreatMove> possibleMoves = new ArrayList<>();
 
         for (int i = y - 4; i < y; i++) {
-            if (Chessboard.validateArrayIndex(i) && chess[x][i] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x, i, pieces));
+            if (Chessboard.validateArrayIndex(i) && position.isEmpty(x, i)) {
+                int length = ChessboardScanUtils.horizontalAdjacentPieces10(position, x, i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x, i, defenseRank(row, length)));
             }
         }
 
         for (int i = y + 1; i < y + 5; i++) {
-            if (Chessboard.validateArrayIndex(i) && chess[x][i] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x, i, pieces));
+            if (Chessboard.validateArrayIndex(i) && position.isEmpty(x, i)) {
+                int length = ChessboardScanUtils.horizontalAdjacentPieces10(position, x, i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x, i, defenseRank(row, length)));
             }
         }
 
         generateDefensiveMoves(defensiveMoves, possibleMoves);
 
         for (ThreatMove move : defensiveMoves) {
-            chess[move.getX()][move.getY()] = pieceType * -1;
+            position.makeMove(move.getX(), move.getY(), pieceType * -1);
         }
+        return defensiveMoves.size();
     }
 
     /**
      * Defend the threat in diagonal direction
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the gain square
      * @param y         Y coordinate of the gain square
      * @param pieceType Piece type of AI
+     * @param row       Array used for holding one row of pieces
+     * @return Number of defensive moves made
      */
-    private static void defenseDiagonalThreat(int[][] chess, int x, int y, int pieceType) {
+    private static int defenseDiagonalThreat(Position position, int x, int y, int pieceType, byte[] row) {
+        int threat = ChessboardScanUtils.THREAT;
         ArrayList<ThreatMove> defensiveMoves = new ArrayList<>();
         ArrayList<ThreatMove> possibleMoves = new ArrayList<>();
 
         for (int i = 4; i > 0; i--) {
             if (Chessboard.validateArrayIndex(x - i) && Chessboard.validateArrayIndex(y - i)
-                && chess[x - i][y - i] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.diagonalAdjacentPieces10(chess, x - i, y - i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x - i, y - i, pieces));
+                && position.isEmpty(x - i, y - i)) {
+                int length =
+                    ChessboardScanUtils.diagonalAdjacentPieces10(position, x - i, y - i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x - i, y - i, defenseRank(row, length)));
             }
         }
         //check from target to right bottom
         for (int i = 1; i < 5; i++) {
             if (Chessboard.validateArrayIndex(x + i) && Chessboard.validateArrayIndex(y + i)
-                && chess[x + i][y + i] == AiConst.EMPTY_STONE) {
-                String pieces = ChessboardScanUtils.diagonalAdjacentPieces10(chess, x + i, y + i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x + i, y + i, pieces));
+                && position.isEmpty(x + i, y + i)) {
+                int length =
+                    ChessboardScanUtils.diagonalAdjacentPieces10(position, x + i, y + i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x + i, y + i, defenseRank(row, length)));
             }
         }
 
         generateDefensiveMoves(defensiveMoves, possibleMoves);
 
         for (ThreatMove move : defensiveMoves) {
-            chess[move.getX()][move.getY()] = pieceType * -1;
+            position.makeMove(move.getX(), move.getY(), pieceType * -1);
         }
+        return defensiveMoves.size();
     }
 
     /**
      * Defend the threat in anti-diagonal direction
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the gain square
      * @param y         Y coordinate of the gain square
      * @param pieceType Piece type of AI
+     * @param row       Array used for holding one row of pieces
+     * @return Number of defensive moves made
      */
-    private static void defenseAntiDiagonalThreat(int[][] chess, int x, int y, int pieceType) {
+    private static int defenseAntiDiagonalThreat(Position position, int x, int y, int pieceType, byte[] row) {
+        int threat = ChessboardScanUtils.THREAT;
         ArrayList<ThreatMove> defensiveMoves = new ArrayList<>();
         ArrayList<ThreatMove> possibleMoves = new ArrayList<>();
 
         for (int i = 4; i > 0; i--) {
             if (Chessboard.validateArrayIndex(x + i) && Chessboard.validateArrayIndex(y - i)
-                && chess[x + i][y - i] == AiConst.EMPTY_STONE) {
+                && position.isEmpty(x + i, y - i)) {
 
-                String pieces = ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x + i, y - i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x + i, y - i, pieces));
+                int length =
+                    ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x + i, y - i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x + i, y - i, defenseRank(row, length)));
             }
         }
 
         //check from target to left bottom
         for (int i = 1; i < 5; i++) {
             if (Chessboard.validateArrayIndex(x - i) && Chessboard.validateArrayIndex(y + i)
-                && chess[x - i][y + i] == AiConst.EMPTY_STONE) {
+                && position.isEmpty(x - i, y + i)) {
 
-                String pieces = ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x - i, y + i, pieceType, 't');
-                possibleMoves.add(new ThreatMove(x - i, y + i, pieces));
+                int length =
+                    ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x - i, y + i, pieceType, threat, row);
+                possibleMoves.add(new ThreatMove(x - i, y + i, defenseRank(row, length)));
             }
         }
 
         generateDefensiveMoves(defensiveMoves, possibleMoves);
 
         for (ThreatMove move : defensiveMoves) {
-            chess[move.getX()][move.getY()] = pieceType * -1;
+            position.makeMove(move.getX(), move.getY(), pieceType * -1);
         }
+        return defensiveMoves.size();
+    }
+
+    /**
+     * Returns the rank of a defensive move
+     *
+     * @param row    Pieces in a row with the defensive move marked as 't'
+     * @param length Number of pieces in the row
+     * @return The highest priority of the patterns matched, or {@link #NO_DEFENSE}
+     */
+    private static int defenseRank(byte[] row, int length) {
+        int defenses = THREAT_MATCHER.match(row, length) >>> DEFENSE;
+        return defenses == 0 ? NO_DEFENSE : Integer.numberOfTrailingZeros(defenses);
     }
 
     /**
-     * Generate all possible defensive moves of a threat
+     * Generate all possible defensive moves of a threat, only the moves of the highest priority are kept
      *
      * @param defensiveMoves A list stores all defensive moves
      * @param possibleMoves  A list stores all possible moves
      */
     private static void generateDefensiveMoves(ArrayList<ThreatMove> defensiveMoves,
         ArrayList<ThreatMove> possibleMoves) {
-        if (defensiveMoves.isEmpty()) {
-            for (ThreatMove move : possibleMoves) {
-                if (move.getPieces().contains(AiConst.DEFENSE_THREAT_A1) || move.getPieces()
-                    .contains(AiConst.DEFENSE_THREAT_A2)) {
-                    defensiveMoves.add(move);
-                }
-            }
-        }
-
-        if (defensiveMoves.isEmpty()) {
-            for (ThreatMove move : possibleMoves) {
-                if (move.getPieces().contains(AiConst.DEFENSE_THREAT_B1) || move.getPieces()
-                    .contains(AiConst.DEFENSE_THREAT_B2)) {
-                    defensiveMoves.add(move);
-                }
-            }
-        }
-
-        if (defensiveMoves.isEmpty()) {
-            for (ThreatMove move : possibleMoves) {
-                if (move.getPieces().contains(AiConst.DEFENSE_THREAT_C1) || move.getPieces()
-                    .contains(AiConst.DEFENSE_THREAT_C2) || move.getPieces().contains(AiConst.DEFENSE_THREAT_C3) || move
-                    .getPieces().contains(AiConst.DEFENSE_THREAT_C4) || move.getPieces()
-                    .contains(AiConst.DEFENSE_THREAT_C5) || move.getPieces().contains(AiConst.DEFENSE_THREAT_C6)) {
-                    defensiveMoves.add(move);
-                }
-            }
+        int bestRank = NO_DEFENSE;
+        for (ThreatMove move : possibleMoves) {
+            bestRank = Math.min(bestRank, move.getRank());
         }
 
-        if (defensiveMoves.isEmpty()) {
+        if (bestRank != NO_DEFENSE) {
             for (ThreatMove move : possibleMoves) {
-                if (move.getPieces().contains(AiConst.DEFENSE_THREAT_D1) || move.getPieces()
-                    .contains(AiConst.DEFENSE_THREAT_D2)) {
+                if (move.getRank() == bestRank) {
                     defensiveMoves.add(move);
                 }
             }
@@ -476,18 +549,20 @@ public class ThreatSpace extends Agent {
     /**
      * Detect whether a threat exists or not
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param pieceType Type of the piece
+     * @param row       Array used for holding one row of pieces
      * @return A boolean indicates the existence of threats
      */
-    private static boolean detectThreats(int[][] chess, int pieceType) {
-        return ChessboardScanUtils.scanVerticalThreat(chess, pieceType) || ChessboardScanUtils
-            .scanHorizontalThreat(chess, pieceType) || ChessboardScanUtils.scanDiagonalThreat(chess, pieceType)
-            || ChessboardScanUtils.scanAntiDiagonalThreat(chess, pieceType) || ChessboardScanUtils
-            .scanVerticalThreat(chess, pieceType * -1) || ChessboardScanUtils
-            .scanHorizontalThreat(chess, pieceType * -1) || ChessboardScanUtils
-            .scanDiagonalThreat(chess, pieceType * -1) || ChessboardScanUtils
-            .scanAntiDiagonalThreat(chess, pieceType * -1);
+    private static boolean detectThreats(Position position, int pieceType, byte[] row) {
+        return ChessboardScanUtils.scanVerticalThreat(position, pieceType, row) || ChessboardScanUtils
+            .scanHorizontalThreat(position, pieceType, row) || ChessboardScanUtils
+            .scanDiagonalThreat(position, pieceType, row) || ChessboardScanUtils
+            .scanAntiDiagonalThreat(position, pieceType, row) || ChessboardScanUtils
+            .scanVerticalThreat(position, pieceType * -1, row) || ChessboardScanUtils
+            .scanHorizontalThreat(position, pieceType * -1, row) || ChessboardScanUtils
+            .scanDiagonalThreat(position, pieceType * -1, row) || ChessboardScanUtils
+            .scanAntiDiagonalThreat(position, pieceType * -1, row);
     }
 }
 
@@ -500,12 +575,12 @@ public class ThreatSpace extends Agent {
 class ThreatMove {
     private int x;
     private int y;
-    private String pieces;
+    private int rank;
 
-    ThreatMove(int x, int y, String pieces) {
+    ThreatMove(int x, int y, int rank) {
         this.x = x;
         this.y = y;
-        this.pieces = pieces;
+        this.rank = rank;
     }
 
     public int getX() {
@@ -524,11 +599,11 @@ class ThreatMove {
         this.y = y;
     }
 
-    public String getPieces() {
-        return pieces;
+    public int getRank() {
+        return rank;
     }
 
-    public void setPieces(String pieces) {
-        this.pieces = pieces;
+    public void setRank(int rank) {
+        this.rank = rank;
     }
 }
\ No newline at end of file
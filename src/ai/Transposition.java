@@ -1,30 +1,46 @@
 package ai;
 
+import ai.board.MoveList;
+import ai.board.Position;
+import ai.board.TranspositionTable;
 import ai.constant.AiConst;
 import ai.utility.AiUtils;
 import ai.utility.HeuristicChessboardUtils;
-import game.GameController;
 import gui.Background;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 /**
  * This class is an ai agent uses transposition table technique
+ * <p>
+ * The search keeps the state of a thread in a {@link SearchState}, so the same search also runs as Lazy SMP:
+ * helper threads search the same root on their own copies of the chessboard and only share the transposition
+ * table, the entries stored by each thread speed up the others.
  *
  * @author Cirun Zhang
- * @version 1.1
+ * @version 1.3
  */
 
 public class Transposition extends Agent {
 
     /**
-     * Transposition table implemented by a hash map
+     * Transposition table of fixed size shared by all the search threads, the scores are stored from the view of
+     * the AI
+     */
+    private static TranspositionTable transpositionTable = new TranspositionTable(AiConst.TRANSPOSITION_TABLE_BITS);
+
+    /**
+     * Piece type of the AI when the table was filled, the table is cleared when the AI changes sides
+     */
+    private static int tablePieceType = aiPieceType;
+
+    /**
+     * Number of threads used by Lazy SMP, including the main thread
      */
-    private static Map<Integer, TranspositionNode> transpositionTable = new HashMap<>(100000);
+    private static int threadCount = Runtime.getRuntime().availableProcessors();
 
-    private static int usage;
+    /**
+     * Set by the main thread of Lazy SMP when it has finished, the helper threads stop searching
+     */
+    private static volatile boolean stopped;
 
     private Transposition() {
     }
@@ -36,242 +52,389 @@ public class Transposition extends Agent {
      * @return Position of the next move
      */
     public static int[] startTranspositionSearch(int[][] chess) {
-        usage = 0;
-        if (isOpening(chess)) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
             return new int[] {7, 7, aiPieceType};
         } else {
-            //instantiate root node with preset x and y to the center of the chessboard(good for pruning)
-            Node root = new Node(-1, -1, -1, chess);
-            Node bestMove;
-
-            bestMove = transpositionMaximizer(root, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            SearchState state = new SearchState(maximumSearchDepth);
+            Node bestMove = rootCheck(state, position);
+            if (bestMove == null) {
+                transpositionMaximizer(state, position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                bestMove = state.bestMove;
+                System.out.println("total nodes: " + state.nodes);
+                Background.addMessage("Total nodes: " + state.nodes);
+            }
 
             int[] result = bestMove.getCoordinates();
             Background.addMessage(
                 "Computer move : (x, " + result[0] + ") (y, " + result[1] + ") score " + bestMove.getScore());
 
-            Background.addMessage("Transposition table size: " + transpositionTable.size());
-            Background.addMessage("Transposition usage: " + usage);
+            Background.addMessage("Transposition usage: " + state.usage);
+            addTableMessages();
             return new int[] {result[0], result[1], aiPieceType};
         }
     }
 
+    /**
+     * Entrance of Lazy SMP, the main thread and the helper threads deepen iteratively until the time budget is used
+     * up. Helpers with an odd id search one ply deeper than the main thread to fill the table ahead of it, the best
+     * move of the deepest iteration completed by the main thread is returned.
+     *
+     * @param chess The chessboard
+     * @return Position of the next move
+     */
+    public static int[] startLazySmp(int[][] chess) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
+            return new int[] {7, 7, aiPieceType};
+        }
+
+        SearchState[] states = new SearchState[Math.max(threadCount, 1)];
+        states[0] = new SearchState(0);
+        Node bestMove = rootCheck(states[0], position);
+        if (bestMove == null) {
+            //falls back to the best sorted move if not even one ply can be searched in time
+            MoveList moves = states[0].moveList(1);
+            bestMove = new Node(moves.getX(0), moves.getY(0), moves.getScore(0));
+
+            stopped = false;
+            startTimer();
+            Thread[] helpers = new Thread[states.length - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                SearchState state = new SearchState(0);
+                Position copy = new Position(position);
+                int depthOffset = (i + 1) % 2;
+                states[i + 1] = state;
+                helpers[i] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        iterativeDeepening(state, copy, depthOffset);
+                    }
+                }, "lazy-smp-" + (i + 1));
+                helpers[i].start();
+            }
+
+            Node result = iterativeDeepening(states[0], position, 0);
+            stopped = true;
+            for (Thread helper : helpers) {
+                joinQuietly(helper);
+            }
+            stopped = false;
+            stopTimer();
+            if (result != null) {
+                bestMove = result;
+            }
+
+            int nodes = 0;
+            for (SearchState state : states) {
+                nodes += state.nodes;
+            }
+            System.out.println("total nodes: " + nodes);
+            Background.addMessage("Threads: " + states.length + " total nodes: " + nodes);
+            Background.addMessage("Completed depth: " + (states[0].completedDepth - 1));
+            addTableMessages();
+        }
+
+        int[] result = bestMove.getCoordinates();
+        Background.addMessage(
+            "Computer move : (x, " + result[0] + ") (y, " + result[1] + ") score " + bestMove.getScore());
+        return new int[] {result[0], result[1], aiPieceType};
+    }
+
+    /**
+     * Sets the size of the transposition table, the stored entries are discarded
+     *
+     * @param bits Base 2 logarithm of the number of buckets, each bucket holds two entries of 16 bytes
+     */
+    public static void setTableSize(int bits) {
+        transpositionTable = new TranspositionTable(bits);
+    }
+
+    /**
+     * Sets the number of threads used by Lazy SMP
+     *
+     * @param threads Number of threads including the main thread
+     */
+    public static void setThreadCount(int threads) {
+        threadCount = threads;
+    }
+
+    /**
+     * Prepares the table for a new search and detects whether the next move wins directly or blocks a direct win
+     *
+     * @param state    State of the main thread
+     * @param position The chessboard
+     * @return Node of the winning or blocking move, or null if the root has to be searched
+     */
+    private static Node rootCheck(SearchState state, Position position) {
+        if (tablePieceType != aiPieceType) {
+            transpositionTable.clear();
+            tablePieceType = aiPieceType;
+        }
+        transpositionTable.newSearch();
+        transpositionTable.resetCounters();
+
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, state.moveList(1));
+        return terminalCheck(position, moves, aiPieceType);
+    }
+
+    /**
+     * Shows the counters of the transposition table
+     */
+    private static void addTableMessages() {
+        Background.addMessage("Transposition table capacity: " + transpositionTable.getCapacity());
+        Background.addMessage("Transposition hits: " + transpositionTable.getHits() + "/"
+            + transpositionTable.getProbes() + " stores: " + transpositionTable.getStores() + " overwrites: "
+            + transpositionTable.getOverwrites());
+    }
+
+    /**
+     * Deepens the search of one thread by one ply per iteration until the search is stopped
+     *
+     * @param state       State of the thread
+     * @param position    The chessboard of the thread
+     * @param depthOffset Number of plies added to every iteration
+     * @return Best move of the deepest completed iteration, or null if no iteration has completed
+     */
+    private static Node iterativeDeepening(SearchState state, Position position, int depthOffset) {
+        Node bestMove = null;
+        int emptyTiles = Position.TILE_NUM - position.getStoneCount();
+        for (int plies = 1 + depthOffset; plies <= emptyTiles; plies++) {
+            state.depthLimit = plies + 1;
+            transpositionMaximizer(state, position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            if (isStopped()) {
+                break;
+            }
+            bestMove = state.bestMove;
+            state.completedDepth = state.depthLimit;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Checks whether the running search has to stop, fixed depth searches are never stopped
+     *
+     * @return A boolean indicates whether the search must stop
+     */
+    private static boolean isStopped() {
+        return stopped || isTimeUp();
+    }
+
+    /**
+     * Waits for a helper thread to finish
+     *
+     * @param helper The helper thread
+     */
+    private static void joinQuietly(Thread helper) {
+        try {
+            helper.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Maximizer of alpha beta pruning applied transposition search,
      * each node will be recorded in the transposition table.
      *
-     * @param root      Current game node
+     * @param state     State of the searching thread
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node in the search tree
      * @param pieceType Type of pieces
      * @param alpha     Alpha value for Max node
      * @param beta      Beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node transpositionMaximizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int transpositionMaximizer(SearchState state, Position position, int depth, int pieceType,
+        int alpha, int beta) {
+        //the search is abandoned once it is stopped, its result is discarded
+        if (isStopped()) {
+            return 0;
+        }
         //base case
-        if (depth >= maximumSearchDepth) {
-            count++;
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+        if (depth >= state.depthLimit) {
+            state.nodes++;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
+        //the Zobrist hash is maintained incrementally by the chessboard
+        long checkSum = position.getHash();
+        int remainingDepth = state.depthLimit - depth;
 
-        //calculate the checksum for the chessboard
-        int checkSum = getCheckSum(chess);
+        /*If the entry was searched at least as deep and its bound decides the window, stop abp and use the
+        score directly. The root is always searched since it has to produce a move*/
+        long entry = transpositionTable.probe(checkSum);
+        if (depth > 1 && isUsable(entry, remainingDepth, alpha, beta)) {
+            state.usage++;
+            return TranspositionTable.getScore(entry);
+        }
 
         int bestScore = Integer.MIN_VALUE;
-        Node bestChild = null;
-
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
-
-        //terminal check
-        if (depth == 1) {
-            Node n = MinimaxAbp.terminalCheck(chess, moves, pieceType);
-            if (n != null) {
-                return n;
+        int bestX = -1;
+        int bestY = -1;
+        int initialAlpha = alpha;
+
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, state.moveList(depth));
+        orderHashMove(position, moves, entry);
+
+        //abp
+        state.nodes++;
+        for (int i = 0; i < moves.size(); i++) {
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = transpositionMinimizer(state, position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
+            if (isStopped()) {
+                return 0;
             }
-        }
 
-        /*If checksum is found in transposition table, and current depth is deeper than or equals to the
-        node in the transposition table, and their minMax properties are the same, stop abp and use the
-        score directly*/
-        if (transpositionTable.containsKey(checkSum) && depth >= transpositionTable.get(checkSum).getDepth()
-            && transpositionTable.get(checkSum).isMaxLayer()) {
-            usage++;
-            bestScore = transpositionTable.get(checkSum).getEvaluation();
+            if (score > bestScore) {
+                bestScore = score;
+                bestX = newX;
+                bestY = newY;
+                alpha = score;
+            }
 
-        } else {
-            //abp
-            count++;
-            for (int[] move : moves) {
-                int newX = move[0];
-                int newY = move[1];
-                int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-                Node child = new Node(newX, newY, -1, nextMove);
-
-                int score = transpositionMinimizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
-
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestChild = child;
-                    alpha = score;
-                }
-
-                //beta pruning
-                if (score >= beta) {
-                    break;
-                }
+            //beta pruning
+            if (score >= beta) {
+                break;
             }
-            //Stores the new record to the transposition table
-            transpositionTable.put(checkSum, new TranspositionNode(checkSum, bestScore, depth, true));
         }
-
-        root.setScore(bestScore);
+        //Stores the new record to the transposition table
+        store(checkSum, remainingDepth, bestScore, initialAlpha, beta, bestX, bestY);
 
         if (depth == 1) {
-            System.out.println("total nodes: " + count);
-            Background.addMessage("Total nodes: " + count);
-            count = 0;
-            return bestChild;
+            state.bestMove = new Node(bestX, bestY, bestScore);
         }
 
-        return root;
+        return bestScore;
     }
 
     /**
      * Minimizer of alpha beta pruning with transposition search technique, each node will be hashed into the
      * transposition table
      *
-     * @param root      Current game node
+     * @param state     State of the searching thread
+     * @param position  The chessboard, restored to its original state on return
      * @param depth     Current depth of the node in the search tree
      * @param pieceType Type of pieces
      * @param alpha     alpha value for Max node
      * @param beta      beta value for Min node
-     * @return The most valuable node
+     * @return Score of the most valuable node
      */
-    private static Node transpositionMinimizer(Node root, int depth, int pieceType, int alpha, int beta) {
+    private static int transpositionMinimizer(SearchState state, Position position, int depth, int pieceType,
+        int alpha, int beta) {
+        if (isStopped()) {
+            return 0;
+        }
         //base case
-        if (depth >= maximumSearchDepth) {
-            count++;
-            root.setScore(HeuristicChessboardUtils.heuristic(root.getChess()));
-            return root;
+        if (depth >= state.depthLimit) {
+            state.nodes++;
+            return HeuristicChessboardUtils.heuristic(position);
         }
 
-        int[][] chess = root.getChess();
-        int checkSum = getCheckSum(chess);
-        int bestScore = Integer.MAX_VALUE;
-        Node bestChild = null;
+        long checkSum = position.getHash();
+        int remainingDepth = state.depthLimit - depth;
 
-        List<int[]> moves = AiUtils.moveGeneratorWithHeuristicSort(chess, 24);
-        //Terminal check
-        if (depth == 1) {
-            Node n = MinimaxAbp.terminalCheck(chess, moves, pieceType);
-            if (n != null) {
-                return n;
-            }
+        long entry = transpositionTable.probe(checkSum);
+        if (isUsable(entry, remainingDepth, alpha, beta)) {
+            state.usage++;
+            return TranspositionTable.getScore(entry);
         }
 
-        /*If checksum is found in transposition table, and current depth is deeper than or equals to the node
-        in the transposition table, and their minMax properties are the same, stop abp and use the
-        score directly*/
-        if (transpositionTable.containsKey(checkSum) && depth >= transpositionTable.get(checkSum).getDepth()
-            && !transpositionTable.get(checkSum).isMaxLayer()) {
-            usage++;
-            bestScore = transpositionTable.get(checkSum).getEvaluation();
-        } else {
-            count++;
-            for (int[] move : moves) {
-                int newX = move[0];
-                int newY = move[1];
-                int[][] nextMove = AiUtils.nextMoveChessboard(chess, newX, newY, pieceType);
-                Node child = new Node(newX, newY, -1, nextMove);
-
-                int score = transpositionMaximizer(child, depth + 1, pieceType * -1, alpha, beta).getScore();
-                if (score < bestScore) {
-                    bestScore = score;
-                    bestChild = child;
-                    beta = score;
-                }
-                //alpha pruning
-                if (score <= alpha) {
-                    break;
-                }
+        int bestScore = Integer.MAX_VALUE;
+        int bestX = -1;
+        int bestY = -1;
+        int initialBeta = beta;
+
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, state.moveList(depth));
+        orderHashMove(position, moves, entry);
+
+        state.nodes++;
+        for (int i = 0; i < moves.size(); i++) {
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            position.makeMove(newX, newY, pieceType);
+            int score = transpositionMaximizer(state, position, depth + 1, pieceType * -1, alpha, beta);
+            position.unmakeMove();
+            if (isStopped()) {
+                return 0;
             }
-            //Stores the new record to the transposition table
-            transpositionTable.put(checkSum, new TranspositionNode(checkSum, bestScore, depth, false));
-        }
 
-        root.setScore(bestScore);
-
-        if (depth == 1) {
-            System.out.println("total nodes: " + count);
-            count = 0;
-            return bestChild;
+            if (score < bestScore) {
+                bestScore = score;
+                bestX = newX;
+                bestY = newY;
+                beta = score;
+            }
+            //alpha pruning
+            if (score <= alpha) {
+                break;
+            }
         }
+        //Stores the new record to the transposition table
+        store(checkSum, remainingDepth, bestScore, alpha, initialBeta, bestX, bestY);
 
-        return root;
+        return bestScore;
     }
 
     /**
-     * Calculates the checksum of the chessboard
+     * Checks whether the score of an entry can replace the search of a node
      *
-     * @param chess 2-dimensional array represents the chessboard
-     * @return Hash value
+     * @param entry          The packed entry, 0 for a missing position
+     * @param remainingDepth Depth to be searched below the node
+     * @param alpha          Alpha value of the node
+     * @param beta           Beta value of the node
+     * @return A boolean indicates whether the stored score decides the node
      */
-    public static int getCheckSum(int[][] chess) {
-        int checkSum = 0;
-        for (int i = 0; i < chess.length; i++) {
-            for (int j = 0; j < chess[0].length; j++) {
-                int pieceType = chess[i][j];
-                switch (pieceType) {
-                    case AiConst.BLACK_STONE:
-                        checkSum ^= GameController.zobrist[0][i][j];
-                        break;
-                    case AiConst.WHITE_STONE:
-                        checkSum ^= GameController.zobrist[1][i][j];
-                        break;
-                    default:
-                        break;
-                }
-            }
+    private static boolean isUsable(long entry, int remainingDepth, int alpha, int beta) {
+        if (entry == 0 || TranspositionTable.getDepth(entry) < remainingDepth) {
+            return false;
+        }
+        int score = TranspositionTable.getScore(entry);
+        switch (TranspositionTable.getBound(entry)) {
+            case TranspositionTable.EXACT:
+                return true;
+            case TranspositionTable.LOWER_BOUND:
+                return score >= beta;
+            default:
+                return score <= alpha;
         }
-        return checkSum;
-    }
-}
-
-/**
- * This class represents the node stored in the transposition table, each node encapsulates the checksum,
- * score, Min&Max and depth in the tree
- *
- * @author Cirun Zhang
- * @version 1.1
- */
-class TranspositionNode {
-    private int checksum, evaluation, depth;
-
-    private boolean isMaxLayer;
-
-    TranspositionNode(int checksum, int evaluation, int depth, boolean isMaxLayer) {
-        this.checksum = checksum;
-        this.evaluation = evaluation;
-        this.depth = depth;
-        this.isMaxLayer = isMaxLayer;
-    }
-
-    int getChecksum() {
-        return checksum;
-    }
-
-    int getEvaluation() {
-        return evaluation;
     }
 
-    int getDepth() {
-        return depth;
+    /**
+     * Moves the best move stored in the entry of a position to the head of its move list
+     *
+     * @param position The chessboard
+     * @param moves    Moves of the position
+     * @param entry    The packed entry, 0 for a missing position
+     */
+    private static void orderHashMove(Position position, MoveList moves, long entry) {
+        int move = TranspositionTable.getMove(entry);
+        if (entry != 0 && move >= 0 && position.isEmpty(move)) {
+            moves.moveToFront(move);
+        }
     }
 
-    boolean isMaxLayer() {
-        return isMaxLayer;
+    /**
+     * Stores the result of a node, the bound type is decided by the window the node was searched with
+     *
+     * @param checkSum       Zobrist hash of the position
+     * @param remainingDepth Depth searched below the node
+     * @param score          Score of the node
+     * @param alpha          Alpha value when the node was entered
+     * @param beta           Beta value when the node was entered
+     * @param x              X coordinate of the best move, or -1 if there is none
+     * @param y              Y coordinate of the best move, or -1 if there is none
+     */
+    private static void store(long checkSum, int remainingDepth, int score, int alpha, int beta, int x, int y) {
+        int bound = TranspositionTable.EXACT;
+        if (score <= alpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (score >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        transpositionTable.store(checkSum, remainingDepth, bound, score, x < 0 ? -1 : Position.index(x, y));
     }
 }
@@ -0,0 +1,311 @@
+package ai;
+
+import ai.board.MoveList;
+import ai.board.Position;
+import ai.utility.AiUtils;
+import ai.utility.HeuristicChessboardUtils;
+import gui.Background;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is an AI agent uses parallel alpha beta pruning with the Young Brothers Wait Concept
+ * <p>
+ * The eldest child of a node is searched first to set the bound, then the younger brothers are searched in
+ * parallel by a fork/join pool, all of them with the bound set by the eldest. A brother producing a cutoff cancels
+ * the brothers after it. Only the brothers up to the first cutoff in move order contribute to the score and to the
+ * node count, so both do not depend on the number of threads or on their timing.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class YoungBrothersWait extends Agent {
+    /**
+     * Minimum number of plies below a node for its younger brothers to be searched in parallel, smaller subtrees
+     * are cheaper to search than to fork
+     */
+    private static final int MIN_SPLIT_DEPTH = 2;
+
+    /**
+     * Pool of the search threads
+     */
+    private static ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private YoungBrothersWait() {
+    }
+
+    /**
+     * Starts parallel alpha beta pruning, the moves are sorted by the heuristic function like
+     * {@link MinimaxAbp#startAlphaBetaPruningWithSort(int[][])}
+     *
+     * @param chess 2-dimension array represents the chessboard
+     * @return Coordinates of the best next move for the AI
+     */
+    public static int[] startParallelAlphaBetaPruning(int[][] chess) {
+        Position position = new Position(chess);
+        if (isOpening(position)) {
+            return new int[] {7, 7, aiPieceType};
+        }
+
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, new MoveList());
+        Node bestMove = terminalCheck(position, moves, aiPieceType);
+        if (bestMove == null) {
+            SearchTask root =
+                new SearchTask(null, 0, position, 1, aiPieceType, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+            pool.invoke(root);
+            bestMove = root.bestMove;
+            System.out.println("total nodes: " + root.nodes);
+            Background.addMessage("Threads: " + pool.getParallelism() + " total nodes: " + root.nodes);
+        }
+
+        int[] result = bestMove.getCoordinates();
+        Background.addMessage(
+            "Computer move : (x, " + result[0] + ") (y, " + result[1] + ") score " + bestMove.getScore());
+        return new int[] {result[0], result[1], aiPieceType};
+    }
+
+    /**
+     * Sets the number of threads of the pool
+     *
+     * @param threads Number of threads
+     */
+    public static void setThreadCount(int threads) {
+        pool.shutdown();
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Alpha beta pruning of one node, the younger brothers are searched in parallel if the subtree is deep enough
+     *
+     * @param task      Task searching the node
+     * @param state     State of the task
+     * @param position  The chessboard of the task, restored to its original state on return
+     * @param depth     Current depth of the node
+     * @param pieceType Identification of players, 1 for black and -1 for white
+     * @param alpha     Alpha value for Max node
+     * @param beta      Beta value for Min node
+     * @param isMax     Identification for max nodes and min nodes
+     * @return Score of the most valuable node, meaningless if the task is cancelled
+     */
+    static int search(SearchTask task, SearchState state, Position position, int depth, int pieceType, int alpha,
+        int beta, boolean isMax) {
+        state.nodes++;
+        if (task.isAbandoned()) {
+            return 0;
+        }
+        //base case
+        if (depth >= state.depthLimit) {
+            return HeuristicChessboardUtils.heuristic(position);
+        }
+
+        int bestScore = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestX = -1;
+        int bestY = -1;
+
+        MoveList moves = AiUtils.moveGeneratorWithHeuristicSort(position, 24, state.moveList(depth));
+        boolean isSplit = state.depthLimit - depth >= MIN_SPLIT_DEPTH;
+        SplitPoint split = null;
+        SearchTask[] brothers = null;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int newX = moves.getX(i);
+            int newY = moves.getY(i);
+            int score;
+            if (i == 1 && isSplit) {
+                //the eldest brother has set the bound, fork the younger brothers in reverse order so the next one
+                //is on top of the local queue and joined without being stolen
+                split = new SplitPoint(task, alpha, beta, isMax);
+                brothers = new SearchTask[moves.size()];
+                for (int j = moves.size() - 1; j >= 1; j--) {
+                    Position next = position.next(moves.getX(j), moves.getY(j), pieceType);
+                    brothers[j] = new SearchTask(split, j, next, depth + 1, pieceType * -1, alpha, beta, !isMax);
+                    brothers[j].fork();
+                }
+            }
+
+            if (brothers != null) {
+                //the brothers after a cutoff are never joined, they see the cutoff and stop by themselves
+                score = brothers[i].join();
+                state.nodes += brothers[i].nodes;
+            } else {
+                position.makeMove(newX, newY, pieceType);
+                score = search(task, state, position, depth + 1, pieceType * -1, alpha, beta, !isMax);
+                position.unmakeMove();
+            }
+
+            if (isMax) {
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestX = newX;
+                    bestY = newY;
+                    alpha = score;
+                }
+                //beta pruning
+                if (score >= beta) {
+                    break;
+                }
+            } else {
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestX = newX;
+                    bestY = newY;
+                    beta = score;
+                }
+                //alpha pruning
+                if (score <= alpha) {
+                    break;
+                }
+            }
+        }
+
+        if (depth == 1) {
+            task.bestMove = new Node(bestX, bestY, bestScore);
+        }
+
+        return bestScore;
+    }
+}
+
+/**
+ * This class represents a node whose younger brothers are searched in parallel, it records the first brother in
+ * move order producing a cutoff
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+class SplitPoint {
+    /**
+     * Task searching the node
+     */
+    private final SearchTask owner;
+
+    /**
+     * Window of the younger brothers
+     */
+    private final int alpha;
+
+    private final int beta;
+
+    /**
+     * Identification for max nodes and min nodes
+     */
+    private final boolean isMax;
+
+    /**
+     * Index of the first brother producing a cutoff, Integer.MAX_VALUE if there is none yet
+     */
+    private final AtomicInteger cutoff = new AtomicInteger(Integer.MAX_VALUE);
+
+    SplitPoint(SearchTask owner, int alpha, int beta, boolean isMax) {
+        this.owner = owner;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.isMax = isMax;
+    }
+
+    /**
+     * Records the score of a brother, the brothers after it are cancelled if the score produces a cutoff
+     *
+     * @param index Index of the brother in the move list
+     * @param score Score of the brother
+     */
+    void report(int index, int score) {
+        if (isMax ? score >= beta : score <= alpha) {
+            cutoff.accumulateAndGet(index, Math::min);
+        }
+    }
+
+    /**
+     * Returns the index of the first brother known to produce a cutoff
+     *
+     * @return Index of the brother, or Integer.MAX_VALUE if there is none yet
+     */
+    int getCutoff() {
+        return cutoff.get();
+    }
+
+    /**
+     * Checks whether the search of the node is cancelled
+     *
+     * @return A boolean indicates whether the results of the node are discarded
+     */
+    boolean isAbandoned() {
+        return owner.isAbandoned();
+    }
+}
+
+/**
+ * This class is a fork/join task searching a subtree on its own copy of the chessboard
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+class SearchTask extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Split point the task is a younger brother of, null for the root
+     */
+    private final SplitPoint split;
+
+    /**
+     * Index of the task in the move list of the split point
+     */
+    private final int index;
+
+    private final Position position;
+
+    private final int depth;
+
+    private final int pieceType;
+
+    private final int alpha;
+
+    private final int beta;
+
+    private final boolean isMax;
+
+    /**
+     * Number of nodes searched by the task, including its younger brothers up to their first cutoff
+     */
+    int nodes;
+
+    /**
+     * Best move of the root, only set by the task searching the root
+     */
+    Node bestMove;
+
+    SearchTask(SplitPoint split, int index, Position position, int depth, int pieceType, int alpha, int beta,
+        boolean isMax) {
+        this.split = split;
+        this.index = index;
+        this.position = position;
+        this.depth = depth;
+        this.pieceType = pieceType;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.isMax = isMax;
+    }
+
+    @Override
+    protected Integer compute() {
+        SearchState state = new SearchState(Agent.maximumSearchDepth);
+        int score = YoungBrothersWait.search(this, state, position, depth, pieceType, alpha, beta, isMax);
+        nodes = state.nodes;
+        if (split != null && !isAbandoned()) {
+            split.report(index, score);
+        }
+        return score;
+    }
+
+    /**
+     * Checks whether an elder brother of the task or of one of its ancestors has produced a cutoff
+     *
+     * @return A boolean indicates whether the task can stop, its result is discarded
+     */
+    boolean isAbandoned() {
+        return split != null && (index > split.getCutoff() || split.isAbandoned());
+    }
+}
@@ -0,0 +1,93 @@
+package ai.board;
+
+import ai.constant.AiConst;
+import ai.utility.LinePatternTable;
+
+/**
+ * This class evaluates the chessboard incrementally
+ * <p>
+ * Every row, column, diagonal and anti-diagonal is kept as an encoded line {@link LinePatternTable} from the view
+ * of black, together with its score for black and for white. Placing or removing a piece only re-scores the four
+ * lines through that tile, so the score of the whole chessboard is available in constant time. The lines are
+ * numbered and found by the line tables of {@link Position}.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+class LineEvaluator {
+    /**
+     * Encoded lines from the view of black
+     */
+    private final int[] codes = new int[Position.LINE_NUM];
+
+    /**
+     * Scores of each line for black and for white
+     */
+    private final int[] blackScores = new int[Position.LINE_NUM];
+
+    private final int[] whiteScores = new int[Position.LINE_NUM];
+
+    /**
+     * Sum of the line scores for black and for white
+     */
+    private int blackTotal;
+
+    private int whiteTotal;
+
+    /**
+     * Creates the evaluator of an empty chessboard
+     */
+    LineEvaluator() {
+    }
+
+    /**
+     * Creates a copy of another evaluator
+     *
+     * @param evaluator The copied evaluator
+     */
+    LineEvaluator(LineEvaluator evaluator) {
+        System.arraycopy(evaluator.codes, 0, codes, 0, Position.LINE_NUM);
+        System.arraycopy(evaluator.blackScores, 0, blackScores, 0, Position.LINE_NUM);
+        System.arraycopy(evaluator.whiteScores, 0, whiteScores, 0, Position.LINE_NUM);
+        blackTotal = evaluator.blackTotal;
+        whiteTotal = evaluator.whiteTotal;
+    }
+
+    /**
+     * Updates the four lines through a tile
+     *
+     * @param index     Bit index of the tile
+     * @param pieceType New piece on the tile, 1 for black, -1 for white and 0 for empty
+     */
+    void update(int index, int pieceType) {
+        int tile = LinePatternTable.encode(pieceType, AiConst.BLACK_STONE);
+        for (int i = index * Position.DIRECTION_NUM; i < (index + 1) * Position.DIRECTION_NUM; i++) {
+            //the first tile of a line is stored in the highest bits
+            int line = Position.LINE_IDS[i];
+            int shift = 2 * (Position.LINE_LAST_BITS[line] - Position.LINE_BITS[i]);
+            int code = (codes[line] & ~(LinePatternTable.BORDER << shift)) | (tile << shift);
+            codes[line] = code;
+
+            //swap ally and opponent to get the view of white
+            int occupied = (code | (code >>> 1)) & 0x55555555;
+            int length = Position.LINE_LENGTHS[line];
+            int blackScore = LinePatternTable.lineScore(LinePatternTable.lineRank(code, length));
+            int whiteScore = LinePatternTable.lineScore(LinePatternTable.lineRank(code ^ (occupied * 3), length));
+
+            blackTotal += blackScore - blackScores[line];
+            whiteTotal += whiteScore - whiteScores[line];
+            blackScores[line] = blackScore;
+            whiteScores[line] = whiteScore;
+        }
+    }
+
+    /**
+     * Returns the score of the chessboard for a player
+     *
+     * @param pieceType Type of the player, 1 for black and -1 for white
+     * @return Score of the player minus score of the opponent
+     */
+    int evaluate(int pieceType) {
+        return pieceType == AiConst.BLACK_STONE ? blackTotal - whiteTotal : whiteTotal - blackTotal;
+    }
+}
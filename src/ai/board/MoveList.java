@@ -0,0 +1,240 @@
+package ai.board;
+
+import java.util.Arrays;
+
+/**
+ * This class is a list of moves backed by a primitive array
+ * <p>
+ * Every move is packed into one long, the score in the high 32 bits and the bit index of the tile in the low 32
+ * bits, so sorting the array orders the moves by score and keeps moves of equal score in the order they were
+ * added. A list is meant to be allocated once and reused by calling {@link #clear()}.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class MoveList {
+    /**
+     * Mask of the bit index in a packed move
+     */
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    /**
+     * Packed moves, one extra slot is kept for a merged killer move
+     */
+    private final long[] moves = new long[Position.TILE_NUM + 1];
+
+    /**
+     * Number of moves in the list
+     */
+    private int size;
+
+    /**
+     * Maximum number of moves kept by {@link #offer(int, int)}
+     */
+    private int limit;
+
+    /**
+     * Removes all the moves
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a move to the end of the list
+     *
+     * @param index Bit index of the move
+     * @param score Score used for sorting
+     */
+    public void add(int index, int score) {
+        moves[size++] = pack(index, score);
+    }
+
+    /**
+     * Inserts a move at the head of the list
+     *
+     * @param index Bit index of the move
+     * @param score Score of the move
+     */
+    public void addFirst(int index, int score) {
+        System.arraycopy(moves, 0, moves, 1, size);
+        moves[0] = pack(index, score);
+        size++;
+    }
+
+    /**
+     * Moves a move to the head of the list, the other moves keep their order. The move is inserted with score 0 if
+     * it is not in the list
+     *
+     * @param index Bit index of the move
+     */
+    public void moveToFront(int index) {
+        int i = 0;
+        while (i < size && getIndex(i) != index) {
+            i++;
+        }
+        if (i == size) {
+            addFirst(index, 0);
+            return;
+        }
+        long move = moves[i];
+        System.arraycopy(moves, 0, moves, 1, i);
+        moves[0] = move;
+    }
+
+    /**
+     * Returns the number of moves
+     *
+     * @return Number of moves in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the bit index of a move
+     *
+     * @param i Position of the move in the list
+     * @return Bit index of the move
+     */
+    public int getIndex(int i) {
+        return (int)(moves[i] & INDEX_MASK);
+    }
+
+    /**
+     * Returns the x coordinate of a move
+     *
+     * @param i Position of the move in the list
+     * @return X coordinate of the move
+     */
+    public int getX(int i) {
+        return Position.toX(getIndex(i));
+    }
+
+    /**
+     * Returns the y coordinate of a move
+     *
+     * @param i Position of the move in the list
+     * @return Y coordinate of the move
+     */
+    public int getY(int i) {
+        return Position.toY(getIndex(i));
+    }
+
+    /**
+     * Returns the score of a move
+     *
+     * @param i Position of the move in the list
+     * @return Score of the move
+     */
+    public int getScore(int i) {
+        return (int)(moves[i] >> 32);
+    }
+
+    /**
+     * Sorts the moves by their scores in ascending order in place
+     */
+    public void sortAscending() {
+        Arrays.sort(moves, 0, size);
+    }
+
+    /**
+     * Sorts the moves by their scores in descending order in place, moves of equal score keep their order
+     */
+    public void sortDescending() {
+        //~score reverses the order of the scores without overflow
+        for (int i = 0; i < size; i++) {
+            moves[i] = pack(getIndex(i), ~getScore(i));
+        }
+        Arrays.sort(moves, 0, size);
+        for (int i = 0; i < size; i++) {
+            moves[i] = pack(getIndex(i), ~getScore(i));
+        }
+    }
+
+    /**
+     * Clears the list to collect the n moves of the highest scores by {@link #offer(int, int)}, the result of
+     * {@link #sortOffered()} is the same as adding every move, {@link #sortDescending()} and
+     * {@link #truncate(int)}. The moves cannot be read until they are sorted
+     *
+     * @param n Maximum number of moves
+     */
+    public void startOffers(int n) {
+        size = 0;
+        limit = Math.max(n, 0);
+    }
+
+    /**
+     * Offers a move, it is kept if it is among the n best moves offered so far. Once n moves are kept they form a
+     * max-heap of reversed keys, whose root is the worst kept move
+     *
+     * @param index Bit index of the move
+     * @param score Score of the move
+     */
+    public void offer(int index, int score) {
+        //~score reverses the order of the scores without overflow
+        long move = pack(index, ~score);
+        if (size < limit) {
+            moves[size++] = move;
+            if (size == limit) {
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(i);
+                }
+            }
+        } else if (limit > 0 && move < moves[0]) {
+            moves[0] = move;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Sorts the offered moves in descending order of their scores, moves of equal score are ordered by bit index
+     */
+    public void sortOffered() {
+        Arrays.sort(moves, 0, size);
+        for (int i = 0; i < size; i++) {
+            moves[i] = pack(getIndex(i), ~getScore(i));
+        }
+    }
+
+    /**
+     * Moves an element of the max-heap down until its children are not larger
+     *
+     * @param i Position of the element in the heap
+     */
+    private void siftDown(int i) {
+        long move = moves[i];
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && moves[child + 1] > moves[child]) {
+                child++;
+            }
+            if (moves[child] <= move) {
+                break;
+            }
+            moves[i] = moves[child];
+            i = child;
+        }
+        moves[i] = move;
+    }
+
+    /**
+     * Keeps only the first n moves
+     *
+     * @param n Maximum number of moves
+     */
+    public void truncate(int n) {
+        size = Math.min(size, n);
+    }
+
+    /**
+     * Packs a move into a long
+     *
+     * @param index Bit index of the move
+     * @param score Score of the move
+     * @return The packed move
+     */
+    private static long pack(int index, int score) {
+        return ((long)score << 32) | index;
+    }
+}
@@ -0,0 +1,433 @@
+package ai.board;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class is an arena of Monte Carlo tree nodes stored as parallel primitive arrays
+ * <p>
+ * A node is an index into the arrays. It holds only the move leading to it, the player of that move, its parent,
+ * its children and its statistics, the chessboard of a node is rebuilt by replaying the moves from the root. The
+ * children of a node are allocated as one block, so they are walked by index from the first child. The arrays are
+ * allocated once and reused by every search, a new search only resets the allocation counter or keeps the subtree
+ * of one node and discards the rest.
+ * <p>
+ * The statistics and the expansion states are atomic arrays, so the arena can be shared by concurrent search
+ * threads. A node is expanded by the single thread claiming it, and its children become visible to other threads
+ * when the expansion is published.
+ * <p>
+ * A node can also be proven a win or a loss for the player of its move. The proofs are plain bytes written by the
+ * thread proving the node, a thread reading an outdated proof only spends one more iteration on the node. A node
+ * can only be proven a win if its children cover every move of the opponent, the nodes whose moves were cut to the
+ * best few are marked incomplete. An incomplete node whose children are all proven losses is widened, its children
+ * are replaced by a new block of every move, the proven children are copied into it without their subtrees.
+ * <p>
+ * The all-moves-as-first statistics of a node count the playouts through its parent in which the move of the node
+ * was played later by the same player, they are only updated by searches using RAVE.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class NodePool {
+    /**
+     * Index of a missing node
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Proof of a node whose game-theoretic value is not known
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * Proof of a node whose player wins, by five in a line or because every reply loses
+     */
+    public static final int WIN = 1;
+
+    /**
+     * Proof of a node whose player loses, because the opponent has a winning reply
+     */
+    public static final int LOSS = 2;
+
+    /**
+     * States of the expansion of a node
+     */
+    private static final int LEAF = 0;
+
+    private static final int EXPANDING = 1;
+
+    private static final int EXPANDED = 2;
+
+    /**
+     * Bit index of the move leading to each node, -1 for the root
+     */
+    private final int[] moves;
+
+    /**
+     * Piece type of the player of the move leading to each node
+     */
+    private final byte[] players;
+
+    private final int[] parents;
+
+    private final int[] firstChildren;
+
+    private final short[] childCounts;
+
+    /**
+     * Whether the children of each node cover every candidate move
+     */
+    private final boolean[] completes;
+
+    /**
+     * Game-theoretic value of each node for the player of its move
+     */
+    private final byte[] proofs;
+
+    private final AtomicIntegerArray visits;
+
+    private final AtomicIntegerArray rewards;
+
+    /**
+     * Virtual losses added by the threads whose paths go through each node
+     */
+    private final AtomicIntegerArray virtualLosses;
+
+    private final AtomicIntegerArray amafVisits;
+
+    private final AtomicIntegerArray amafRewards;
+
+    private final AtomicIntegerArray states;
+
+    /**
+     * Number of allocated nodes
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * New index of each node while the arena is compacted, allocated by the first compaction
+     */
+    private int[] newIndexes;
+
+    /**
+     * Creates an empty arena
+     *
+     * @param capacity Maximum number of nodes
+     */
+    public NodePool(int capacity) {
+        moves = new int[capacity];
+        players = new byte[capacity];
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        childCounts = new short[capacity];
+        completes = new boolean[capacity];
+        proofs = new byte[capacity];
+        visits = new AtomicIntegerArray(capacity);
+        rewards = new AtomicIntegerArray(capacity);
+        virtualLosses = new AtomicIntegerArray(capacity);
+        amafVisits = new AtomicIntegerArray(capacity);
+        amafRewards = new AtomicIntegerArray(capacity);
+        states = new AtomicIntegerArray(capacity);
+    }
+
+    /**
+     * Discards all the nodes and allocates a new root
+     *
+     * @param player Piece type of the player who moved last at the root
+     * @return Index of the root
+     */
+    public int newRoot(int player) {
+        size.set(1);
+        initNode(0, NONE, -1, player);
+        return 0;
+    }
+
+    /**
+     * Makes a node the root, its subtree is kept and the other nodes are discarded. The kept nodes are moved to the
+     * front of the arena in their original order, so every block of children stays in one piece. The arena must not
+     * be used by other threads meanwhile
+     *
+     * @param node Index of the new root
+     * @return Index of the root
+     */
+    public int promote(int node) {
+        int count = size();
+        if (newIndexes == null) {
+            newIndexes = new int[moves.length];
+        }
+
+        //a child is allocated after its parent, so the parent of a node is always numbered before the node, the
+        //slots of a block left unused by the children or never published hold stale nodes outside every block
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int parent = parents[i];
+            boolean isKept = i == node || i > node && parent != NONE && parent < i && newIndexes[parent] != NONE
+                && i >= firstChildren[parent] && i < firstChildren[parent] + childCounts[parent];
+            newIndexes[i] = isKept ? kept++ : NONE;
+        }
+
+        //a node only moves down, to a slot whose node has already been moved
+        for (int i = node; i < count; i++) {
+            int to = newIndexes[i];
+            if (to != NONE) {
+                moves[to] = moves[i];
+                players[to] = players[i];
+                parents[to] = i == node ? NONE : newIndexes[parents[i]];
+                firstChildren[to] = childCounts[i] == 0 ? NONE : newIndexes[firstChildren[i]];
+                childCounts[to] = childCounts[i];
+                completes[to] = completes[i];
+                proofs[to] = proofs[i];
+                visits.set(to, visits.get(i));
+                rewards.set(to, rewards.get(i));
+                virtualLosses.set(to, 0);
+                amafVisits.set(to, amafVisits.get(i));
+                amafRewards.set(to, amafRewards.get(i));
+                states.set(to, states.get(i));
+            }
+        }
+        size.set(kept);
+        return 0;
+    }
+
+    /**
+     * Allocates a block of nodes for the children of a node
+     *
+     * @param count Number of children
+     * @return Index of the first child, or {@link #NONE} if the arena is full
+     */
+    public int allocate(int count) {
+        if (size.get() + count > moves.length) {
+            return NONE;
+        }
+        int first = size.getAndAdd(count);
+        return first + count > moves.length ? NONE : first;
+    }
+
+    /**
+     * Initialises an allocated node
+     *
+     * @param node   Index of the node
+     * @param parent Index of the parent
+     * @param move   Bit index of the move leading to the node
+     * @param player Piece type of the player of the move
+     */
+    public void initNode(int node, int parent, int move, int player) {
+        moves[node] = move;
+        players[node] = (byte)player;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        childCounts[node] = 0;
+        completes[node] = false;
+        proofs[node] = UNKNOWN;
+        visits.set(node, 0);
+        rewards.set(node, 0);
+        virtualLosses.set(node, 0);
+        amafVisits.set(node, 0);
+        amafRewards.set(node, 0);
+        states.set(node, LEAF);
+    }
+
+    /**
+     * Claims the expansion of a leaf, only one thread succeeds
+     *
+     * @param node Index of the node
+     * @return A boolean indicates whether the calling thread has to expand the node
+     */
+    public boolean claimExpansion(int node) {
+        return states.compareAndSet(node, LEAF, EXPANDING);
+    }
+
+    /**
+     * Gives up a claimed expansion, the node stays a leaf
+     *
+     * @param node Index of the node
+     */
+    public void releaseExpansion(int node) {
+        states.set(node, LEAF);
+    }
+
+    /**
+     * Claims the widening of an expanded node, only one thread succeeds. The node is seen as a leaf by the other
+     * threads until its new children are published
+     *
+     * @param node Index of the node
+     * @return A boolean indicates whether the calling thread has to widen the node
+     */
+    public boolean claimWidening(int node) {
+        return states.compareAndSet(node, EXPANDED, EXPANDING);
+    }
+
+    /**
+     * Gives up a claimed widening, the node keeps its children
+     *
+     * @param node Index of the node
+     */
+    public void releaseWidening(int node) {
+        states.set(node, EXPANDED);
+    }
+
+    /**
+     * Copies the move, the proof and the statistics of a node to an allocated node, the copy has no children
+     *
+     * @param from   Index of the copied node
+     * @param to     Index of the copy
+     * @param parent Index of the parent of the copy
+     */
+    public void copyNode(int from, int to, int parent) {
+        initNode(to, parent, moves[from], players[from]);
+        proofs[to] = proofs[from];
+        visits.set(to, visits.get(from));
+        rewards.set(to, rewards.get(from));
+        amafVisits.set(to, amafVisits.get(from));
+        amafRewards.set(to, amafRewards.get(from));
+    }
+
+    /**
+     * Publishes the children of a claimed node, the node stops being a leaf
+     *
+     * @param node       Index of the node
+     * @param firstChild Index of the first child
+     * @param count      Number of children
+     * @param complete   Whether the children cover every candidate move
+     */
+    public void setChildren(int node, int firstChild, int count, boolean complete) {
+        firstChildren[node] = firstChild;
+        childCounts[node] = (short)count;
+        completes[node] = complete;
+        states.set(node, EXPANDED);
+    }
+
+    /**
+     * Checks whether the children of a node are not published yet
+     *
+     * @param node Index of the node
+     * @return A boolean indicates whether the node is a leaf
+     */
+    public boolean isLeaf(int node) {
+        return states.get(node) != EXPANDED;
+    }
+
+    /**
+     * Adds the result of a playout to a node
+     *
+     * @param node        Index of the node
+     * @param reward      Reward of the playout for the node
+     * @param virtualLoss Virtual loss removed from the node
+     */
+    public void update(int node, int reward, int virtualLoss) {
+        rewards.addAndGet(node, reward);
+        visits.incrementAndGet(node);
+        addVirtualLoss(node, -virtualLoss);
+    }
+
+    /**
+     * Adds the result of a playout in which the move of a node was played later by the same player
+     *
+     * @param node   Index of the node
+     * @param reward Reward of the playout for the node
+     */
+    public void updateAmaf(int node, int reward) {
+        amafRewards.addAndGet(node, reward);
+        amafVisits.incrementAndGet(node);
+    }
+
+    /**
+     * Adds a virtual loss to a node
+     *
+     * @param node        Index of the node
+     * @param virtualLoss Virtual loss, negative to remove it
+     */
+    public void addVirtualLoss(int node, int virtualLoss) {
+        if (virtualLoss != 0) {
+            virtualLosses.addAndGet(node, virtualLoss);
+        }
+    }
+
+    public int getMove(int node) {
+        return moves[node];
+    }
+
+    public int getPlayer(int node) {
+        return players[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getChildCount(int node) {
+        return childCounts[node];
+    }
+
+    /**
+     * Checks whether the children of a node cover every candidate move, so the node can be proven a win by them
+     *
+     * @param node Index of the node
+     * @return A boolean indicates whether no candidate move was left out of the children
+     */
+    public boolean isComplete(int node) {
+        return completes[node];
+    }
+
+    public int getVisits(int node) {
+        return visits.get(node);
+    }
+
+    public int getReward(int node) {
+        return rewards.get(node);
+    }
+
+    public int getVirtualLoss(int node) {
+        return virtualLosses.get(node);
+    }
+
+    public int getAmafVisits(int node) {
+        return amafVisits.get(node);
+    }
+
+    public int getAmafReward(int node) {
+        return amafRewards.get(node);
+    }
+
+    /**
+     * Returns the proof of a node
+     *
+     * @param node Index of the node
+     * @return One of {@link #UNKNOWN}, {@link #WIN} and {@link #LOSS}
+     */
+    public int getProof(int node) {
+        return proofs[node];
+    }
+
+    /**
+     * Proves a node a win or a loss for the player of its move
+     *
+     * @param node  Index of the node
+     * @param proof {@link #WIN} or {@link #LOSS}
+     */
+    public void setProof(int node, int proof) {
+        proofs[node] = (byte)proof;
+    }
+
+    /**
+     * Returns the number of allocated nodes
+     *
+     * @return Number of nodes
+     */
+    public int size() {
+        return Math.min(size.get(), moves.length);
+    }
+
+    /**
+     * Returns the number of nodes the arena can hold
+     *
+     * @return Capacity of the arena
+     */
+    public int getCapacity() {
+        return moves.length;
+    }
+}
@@ -0,0 +1,182 @@
+package ai.board;
+
+import ai.constant.AiConst;
+
+/**
+ * This class plays random games from a position, it is the scratch board of the rollouts of Monte Carlo tree search
+ * <p>
+ * A playout loads the line masks, the occupied tiles and the neighbour counts of a position, and the candidate tiles
+ * into an array. A random candidate is removed from the array by swapping the last one into its place, and the
+ * tiles becoming candidates are appended, so every move costs the number of its neighbours and nothing is
+ * allocated. Random numbers come from a xorshift generator owned by the playout, an instance is used by one thread.
+ * The moves of the last playout are kept in order of play until the next one.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class Playout {
+    private final int[] blackLines = new int[Position.LINE_NUM];
+
+    private final int[] whiteLines = new int[Position.LINE_NUM];
+
+    private final long[] occupied = new long[(Position.TILE_NUM + 63) >>> 6];
+
+    private final byte[] neighbourCounts = new byte[Position.TILE_NUM];
+
+    /**
+     * Bit indexes of the candidate tiles, empty tiles with at least one piece within the candidate distance
+     */
+    private final int[] candidates = new int[Position.TILE_NUM];
+
+    /**
+     * Position of each candidate tile in the candidate array, meaningless for other tiles
+     */
+    private final int[] slots = new int[Position.TILE_NUM];
+
+    private int candidateCount;
+
+    /**
+     * Bit indexes of the moves of the last playout, the players alternate starting with the opponent of the player
+     * who moved last on the loaded chessboard
+     */
+    private final int[] played = new int[Position.TILE_NUM];
+
+    private int playedCount;
+
+    /**
+     * State of the random generator, never 0
+     */
+    private long seed;
+
+    /**
+     * Creates a playout
+     *
+     * @param seed Seed of the random generator
+     */
+    public Playout(long seed) {
+        setSeed(seed);
+    }
+
+    /**
+     * Restarts the random generator
+     *
+     * @param seed Seed of the random generator
+     */
+    public void setSeed(long seed) {
+        this.seed = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    /**
+     * Plays random moves from a position until a player makes five in a line or no candidate is left, the
+     * position is not changed
+     *
+     * @param position       The chessboard to start from
+     * @param lastTurnPlayer Piece type of the player who moved last on the chessboard
+     * @return Piece type of the winner, or 0 if nobody wins
+     */
+    public int play(Position position, int lastTurnPlayer) {
+        load(position);
+        playedCount = 0;
+        int player = lastTurnPlayer;
+        while (candidateCount > 0) {
+            player *= -1;
+            int index = candidates[nextInt(candidateCount)];
+            remove(index);
+            played[playedCount++] = index;
+            int[] lines = player == AiConst.BLACK_STONE ? blackLines : whiteLines;
+            place(index, lines);
+            if (Position.isFiveInLine(lines, index)) {
+                return player;
+            }
+        }
+        return AiConst.EMPTY_STONE;
+    }
+
+    /**
+     * Returns the number of moves of the last playout
+     *
+     * @return Number of moves
+     */
+    public int getPlayedCount() {
+        return playedCount;
+    }
+
+    /**
+     * Returns a move of the last playout
+     *
+     * @param i Position of the move in order of play
+     * @return Bit index of the move
+     */
+    public int getPlayed(int i) {
+        return played[i];
+    }
+
+    /**
+     * Copies the state of a position
+     *
+     * @param position The chessboard to start from
+     */
+    private void load(Position position) {
+        System.arraycopy(position.blackLines, 0, blackLines, 0, Position.LINE_NUM);
+        System.arraycopy(position.whiteLines, 0, whiteLines, 0, Position.LINE_NUM);
+        System.arraycopy(position.occupied, 0, occupied, 0, occupied.length);
+        System.arraycopy(position.neighbourCounts, 0, neighbourCounts, 0, Position.TILE_NUM);
+        candidateCount = 0;
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            add(index);
+        }
+    }
+
+    /**
+     * Places a piece on a tile which has been removed from the candidates
+     *
+     * @param index Bit index of the tile
+     * @param lines Line masks of the colour of the piece
+     */
+    private void place(int index, int[] lines) {
+        occupied[index >>> 6] |= 1L << index;
+        for (int i = index * Position.DIRECTION_NUM; i < (index + 1) * Position.DIRECTION_NUM; i++) {
+            lines[Position.LINE_IDS[i]] ^= 1 << Position.LINE_BITS[i];
+        }
+        for (int neighbour : Position.NEIGHBOURS[index]) {
+            if (neighbourCounts[neighbour]++ == 0 && (occupied[neighbour >>> 6] & (1L << neighbour)) == 0) {
+                add(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Appends a tile to the candidates
+     *
+     * @param index Bit index of the tile
+     */
+    private void add(int index) {
+        slots[index] = candidateCount;
+        candidates[candidateCount++] = index;
+    }
+
+    /**
+     * Removes a tile from the candidates, the last candidate takes its place
+     *
+     * @param index Bit index of the tile
+     */
+    private void remove(int index) {
+        int slot = slots[index];
+        int last = candidates[--candidateCount];
+        candidates[slot] = last;
+        slots[last] = slot;
+    }
+
+    /**
+     * Returns a random number by xorshift64*
+     *
+     * @param bound Upper bound, exclusive
+     * @return A random number from 0 to bound - 1
+     */
+    private int nextInt(int bound) {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return (int)(((seed * 0x2545F4914F6CDD1DL >>> 32) * bound) >>> 32);
+    }
+}
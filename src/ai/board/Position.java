@@ -0,0 +1,662 @@
+package ai.board;
+
+import ai.constant.AiConst;
+import gui.constant.GuiConst;
+
+import java.util.Arrays;
+
+/**
+ * This class represents the chessboard as bitboards
+ * <p>
+ * Every colour owns a 225-bit set packed into four longs and the occupancy set is the union of both of them.
+ * The tile (x, y) is mapped to the bit with index x * 15 + y.
+ * <p>
+ * Searches mutate one position in place with {@link #makeMove(int, int, int)} and restore it with
+ * {@link #unmakeMove()}, the played moves are kept in a move stack so no board is copied per node.
+ * <p>
+ * The empty tiles within distance 2 of any piece are tracked as a candidate set, move generators iterate it with
+ * {@link #nextCandidate(int)} instead of scanning the whole chessboard.
+ * <p>
+ * Move generators may also cache a heuristic mark per empty tile. The mark of a tile only depends on the pieces
+ * within 4 tiles on its four lines, so a move only invalidates the marks of those tiles. The invalidated marks
+ * are saved by {@link #makeMove(int, int, int)} and restored by {@link #unmakeMove()}, which keeps the cache valid
+ * across a whole search.
+ * <p>
+ * Every colour also keeps one bit mask per line of the chessboard, so five in a line is detected by shifting and
+ * ANDing the masks of the four lines through a tile.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class Position {
+    /**
+     * Number of tiles in one row of the chessboard
+     */
+    public static final int SIZE = GuiConst.TILE_NUM_PER_ROW;
+
+    /**
+     * Number of tiles of the chessboard
+     */
+    public static final int TILE_NUM = SIZE * SIZE;
+
+    /**
+     * Number of longs used by one bitboard
+     */
+    private static final int WORD_NUM = (TILE_NUM + 63) >>> 6;
+
+    /**
+     * Maximum distance between a candidate tile and its nearest piece
+     */
+    private static final int CANDIDATE_DISTANCE = 2;
+
+    /**
+     * Bit indexes of the tiles within the candidate distance of each tile, excluding the tile itself
+     */
+    static final int[][] NEIGHBOURS = new int[TILE_NUM][];
+
+    /**
+     * Maximum distance on a line between a tile and the pieces its heuristic mark depends on
+     */
+    private static final int MARK_DISTANCE = 4;
+
+    /**
+     * Bit indexes of the tiles whose marks depend on each tile, excluding the tile itself
+     */
+    private static final int[][] LINE_NEIGHBOURS = new int[TILE_NUM][];
+
+    /**
+     * Number of lines of the chessboard, rows, columns and both diagonals of every length
+     */
+    static final int LINE_NUM = 6 * SIZE - 2;
+
+    /**
+     * Number of lines through each tile
+     */
+    static final int DIRECTION_NUM = 4;
+
+    /**
+     * Index of the line through each tile in each direction, the entries of one tile are stored together
+     */
+    static final int[] LINE_IDS = new int[TILE_NUM * DIRECTION_NUM];
+
+    /**
+     * Bit position of each tile in each line through it, the entries of one tile are stored together
+     */
+    static final int[] LINE_BITS = new int[TILE_NUM * DIRECTION_NUM];
+
+    /**
+     * Number of tiles of each line
+     */
+    static final int[] LINE_LENGTHS = new int[LINE_NUM];
+
+    /**
+     * Bit position of the last tile of each line
+     */
+    static final int[] LINE_LAST_BITS = new int[LINE_NUM];
+
+    static {
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int[] neighbours = new int[(2 * CANDIDATE_DISTANCE + 1) * (2 * CANDIDATE_DISTANCE + 1) - 1];
+                int count = 0;
+                for (int i = x - CANDIDATE_DISTANCE; i <= x + CANDIDATE_DISTANCE; i++) {
+                    for (int j = y - CANDIDATE_DISTANCE; j <= y + CANDIDATE_DISTANCE; j++) {
+                        if (i >= 0 && i < SIZE && j >= 0 && j < SIZE && (i != x || j != y)) {
+                            neighbours[count++] = index(i, j);
+                        }
+                    }
+                }
+                NEIGHBOURS[index(x, y)] = Arrays.copyOf(neighbours, count);
+
+                int[] lineNeighbours = new int[8 * MARK_DISTANCE];
+                count = 0;
+                for (int distance = -MARK_DISTANCE; distance <= MARK_DISTANCE; distance++) {
+                    int[][] tiles = {{x + distance, y}, {x, y + distance}, {x + distance, y + distance},
+                        {x - distance, y + distance}};
+                    for (int[] tile : tiles) {
+                        if (distance != 0 && tile[0] >= 0 && tile[0] < SIZE && tile[1] >= 0 && tile[1] < SIZE) {
+                            lineNeighbours[count++] = index(tile[0], tile[1]);
+                        }
+                    }
+                }
+                LINE_NEIGHBOURS[index(x, y)] = Arrays.copyOf(lineNeighbours, count);
+
+                //the tiles of a diagonal are ordered by x, diagonals are numbered by x - y and x + y
+                int line = index(x, y) * DIRECTION_NUM;
+                LINE_IDS[line] = x;
+                LINE_BITS[line] = y;
+                LINE_IDS[line + 1] = SIZE + y;
+                LINE_BITS[line + 1] = x;
+                LINE_IDS[line + 2] = 3 * SIZE - 1 + x - y;
+                LINE_BITS[line + 2] = x;
+                LINE_IDS[line + 3] = 4 * SIZE - 1 + x + y;
+                LINE_BITS[line + 3] = x;
+                for (int i = line; i < line + DIRECTION_NUM; i++) {
+                    LINE_LENGTHS[LINE_IDS[i]]++;
+                    LINE_LAST_BITS[LINE_IDS[i]] = Math.max(LINE_LAST_BITS[LINE_IDS[i]], LINE_BITS[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bitboard of black pieces
+     */
+    private final long[] black = new long[WORD_NUM];
+
+    /**
+     * Bitboard of white pieces
+     */
+    private final long[] white = new long[WORD_NUM];
+
+    /**
+     * Bitboard of all pieces
+     */
+    final long[] occupied = new long[WORD_NUM];
+
+    /**
+     * Bit masks of black pieces on every line
+     */
+    final int[] blackLines = new int[LINE_NUM];
+
+    /**
+     * Bit masks of white pieces on every line
+     */
+    final int[] whiteLines = new int[LINE_NUM];
+
+    /**
+     * Number of pieces on the chessboard
+     */
+    private int stoneCount;
+
+    /**
+     * Zobrist hash of the chessboard, updated on every placed or removed piece
+     */
+    private long hash;
+
+    /**
+     * Number of pieces within the candidate distance of each tile
+     */
+    final byte[] neighbourCounts = new byte[TILE_NUM];
+
+    /**
+     * Bitboard of the candidate tiles, empty tiles with at least one piece within the candidate distance
+     */
+    private final long[] candidates = new long[WORD_NUM];
+
+    /**
+     * Line scores of the chessboard, updated on every placed or removed piece
+     */
+    private final LineEvaluator evaluator;
+
+    /**
+     * Bit indexes of the moves made by {@link #makeMove(int, int, int)}, in order of play
+     */
+    private final int[] moveStack = new int[TILE_NUM];
+
+    /**
+     * Number of moves in the move stack
+     */
+    private int moveCount;
+
+    /**
+     * Cached marks of the tiles, allocated when the first mark is cached
+     */
+    private int[] marks;
+
+    /**
+     * Bitboard of the tiles with a valid cached mark
+     */
+    private final long[] markedTiles = new long[WORD_NUM];
+
+    /**
+     * Marks invalidated by the moves in the move stack, stored as pairs of bit index and mark
+     */
+    private int[] markHistory;
+
+    /**
+     * Size of the mark history before each move in the move stack
+     */
+    private int[] markHistoryStarts;
+
+    /**
+     * Number of ints used in the mark history
+     */
+    private int markHistorySize;
+
+    /**
+     * Creates an empty chessboard
+     */
+    public Position() {
+        evaluator = new LineEvaluator();
+    }
+
+    /**
+     * Creates the bitboards from a 2-dimensional chessboard
+     *
+     * @param chess 2-dimensional array represents the chessboard
+     */
+    public Position(int[][] chess) {
+        evaluator = new LineEvaluator();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (chess[i][j] != AiConst.EMPTY_STONE) {
+                    place(index(i, j), chess[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of another position
+     *
+     * @param position The copied position
+     */
+    public Position(Position position) {
+        System.arraycopy(position.black, 0, black, 0, WORD_NUM);
+        System.arraycopy(position.white, 0, white, 0, WORD_NUM);
+        System.arraycopy(position.occupied, 0, occupied, 0, WORD_NUM);
+        System.arraycopy(position.blackLines, 0, blackLines, 0, LINE_NUM);
+        System.arraycopy(position.whiteLines, 0, whiteLines, 0, LINE_NUM);
+        stoneCount = position.stoneCount;
+        hash = position.hash;
+        System.arraycopy(position.neighbourCounts, 0, neighbourCounts, 0, TILE_NUM);
+        System.arraycopy(position.candidates, 0, candidates, 0, WORD_NUM);
+        evaluator = new LineEvaluator(position.evaluator);
+        System.arraycopy(position.moveStack, 0, moveStack, 0, position.moveCount);
+        moveCount = position.moveCount;
+    }
+
+    /**
+     * Returns the bit index of a tile
+     *
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     * @return Bit index of the tile
+     */
+    public static int index(int x, int y) {
+        return x * SIZE + y;
+    }
+
+    /**
+     * Returns the x coordinate of a bit index
+     *
+     * @param index Bit index of the tile
+     * @return X coordinate of the tile
+     */
+    public static int toX(int index) {
+        return index / SIZE;
+    }
+
+    /**
+     * Returns the y coordinate of a bit index
+     *
+     * @param index Bit index of the tile
+     * @return Y coordinate of the tile
+     */
+    public static int toY(int index) {
+        return index % SIZE;
+    }
+
+    /**
+     * Returns the piece on a tile
+     *
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     * @return 1 for black, -1 for white and 0 for empty
+     */
+    public int get(int x, int y) {
+        return get(index(x, y));
+    }
+
+    /**
+     * Returns the piece on a tile
+     *
+     * @param index Bit index of the tile
+     * @return 1 for black, -1 for white and 0 for empty
+     */
+    public int get(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((occupied[word] & bit) == 0) {
+            return AiConst.EMPTY_STONE;
+        }
+        return (black[word] & bit) != 0 ? AiConst.BLACK_STONE : AiConst.WHITE_STONE;
+    }
+
+    /**
+     * Checks whether a tile is empty or not
+     *
+     * @param x X coordinate of the tile
+     * @param y Y coordinate of the tile
+     * @return A boolean indicates whether the tile is empty or not
+     */
+    public boolean isEmpty(int x, int y) {
+        return isEmpty(index(x, y));
+    }
+
+    /**
+     * Checks whether a tile is empty or not
+     *
+     * @param index Bit index of the tile
+     * @return A boolean indicates whether the tile is empty or not
+     */
+    public boolean isEmpty(int index) {
+        return (occupied[index >>> 6] & (1L << index)) == 0;
+    }
+
+    /**
+     * Places a piece on an empty tile without recording it in the move stack
+     *
+     * @param index     Bit index of the tile
+     * @param pieceType Type of piece, 1 for black and -1 for white
+     */
+    private void place(int index, int pieceType) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if (pieceType == AiConst.BLACK_STONE) {
+            black[word] |= bit;
+        } else {
+            white[word] |= bit;
+        }
+        occupied[word] |= bit;
+        toggleLines(index, pieceType);
+        stoneCount++;
+        hash ^= Zobrist.key(index, pieceType);
+        evaluator.update(index, pieceType);
+
+        candidates[word] &= ~bit;
+        for (int neighbour : NEIGHBOURS[index]) {
+            if (neighbourCounts[neighbour]++ == 0 && isEmpty(neighbour)) {
+                candidates[neighbour >>> 6] |= 1L << neighbour;
+            }
+        }
+    }
+
+    /**
+     * Flips the bits of a tile in the line masks of a colour
+     *
+     * @param index     Bit index of the tile
+     * @param pieceType Type of piece, 1 for black and -1 for white
+     */
+    private void toggleLines(int index, int pieceType) {
+        int[] lines = pieceType == AiConst.BLACK_STONE ? blackLines : whiteLines;
+        for (int i = index * DIRECTION_NUM; i < (index + 1) * DIRECTION_NUM; i++) {
+            lines[LINE_IDS[i]] ^= 1 << LINE_BITS[i];
+        }
+    }
+
+    /**
+     * Checks whether the piece on a tile is part of five or more pieces of the same colour in a line
+     *
+     * @param index Bit index of the tile
+     * @return A boolean indicates whether the piece forms five in line, false if the tile is empty
+     */
+    public boolean isFiveInLine(int index) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((occupied[word] & bit) == 0) {
+            return false;
+        }
+        return isFiveInLine((black[word] & bit) != 0 ? blackLines : whiteLines, index);
+    }
+
+    /**
+     * Checks whether a tile is part of five or more set bits in a line, in the line masks of one colour
+     *
+     * @param lines Line masks of the colour of the piece
+     * @param index Bit index of the tile
+     * @return A boolean indicates whether the piece forms five in line
+     */
+    static boolean isFiveInLine(int[] lines, int index) {
+        for (int i = index * DIRECTION_NUM; i < (index + 1) * DIRECTION_NUM; i++) {
+            //only the 9 tiles centred on the piece are kept so the five found must contain it
+            int line = lines[LINE_IDS[i]] & (0x1FF << LINE_BITS[i]) >>> 4;
+            if ((line & (line >>> 1) & (line >>> 2) & (line >>> 3) & (line >>> 4)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plays a move on an empty tile and pushes it to the move stack
+     *
+     * @param x         X coordinate of the move
+     * @param y         Y coordinate of the move
+     * @param pieceType Type of piece, 1 for black and -1 for white
+     */
+    public void makeMove(int x, int y, int pieceType) {
+        int index = index(x, y);
+        place(index, pieceType);
+        if (marks != null) {
+            saveMarks(index);
+        }
+        moveStack[moveCount++] = index;
+    }
+
+    /**
+     * Takes back the last move made by {@link #makeMove(int, int, int)}
+     */
+    public void unmakeMove() {
+        int index = moveStack[--moveCount];
+        int word = index >>> 6;
+        int pieceType = get(index);
+        hash ^= Zobrist.key(index, pieceType);
+        toggleLines(index, pieceType);
+        long mask = ~(1L << index);
+        black[word] &= mask;
+        white[word] &= mask;
+        occupied[word] &= mask;
+        stoneCount--;
+        evaluator.update(index, AiConst.EMPTY_STONE);
+
+        for (int neighbour : NEIGHBOURS[index]) {
+            if (--neighbourCounts[neighbour] == 0) {
+                candidates[neighbour >>> 6] &= ~(1L << neighbour);
+            }
+        }
+        if (neighbourCounts[index] > 0) {
+            candidates[word] |= ~mask;
+        }
+
+        if (marks != null) {
+            restoreMarks(index);
+        }
+    }
+
+    /**
+     * Invalidates the marks depending on a new piece and saves the valid ones to the mark history
+     *
+     * @param index Bit index of the new piece
+     */
+    private void saveMarks(int index) {
+        markHistoryStarts[moveCount] = markHistorySize;
+        for (int neighbour : LINE_NEIGHBOURS[index]) {
+            int word = neighbour >>> 6;
+            long bit = 1L << neighbour;
+            if ((markedTiles[word] & bit) != 0) {
+                markedTiles[word] &= ~bit;
+                markHistory[markHistorySize++] = neighbour;
+                markHistory[markHistorySize++] = marks[neighbour];
+            }
+        }
+    }
+
+    /**
+     * Invalidates the marks cached while a piece was on the chessboard and restores the marks saved when it was
+     * placed
+     *
+     * @param index Bit index of the removed piece
+     */
+    private void restoreMarks(int index) {
+        for (int neighbour : LINE_NEIGHBOURS[index]) {
+            markedTiles[neighbour >>> 6] &= ~(1L << neighbour);
+        }
+        int start = markHistoryStarts[moveCount];
+        for (int i = start; i < markHistorySize; i += 2) {
+            int neighbour = markHistory[i];
+            markedTiles[neighbour >>> 6] |= 1L << neighbour;
+            marks[neighbour] = markHistory[i + 1];
+        }
+        markHistorySize = start;
+    }
+
+    /**
+     * Checks whether a tile has a valid cached mark
+     *
+     * @param index Bit index of the tile
+     * @return A boolean indicates whether the cached mark can be used or not
+     */
+    public boolean isMarkCached(int index) {
+        return (markedTiles[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the cached mark of a tile, only valid if {@link #isMarkCached(int)} returns true
+     *
+     * @param index Bit index of the tile
+     * @return The cached mark
+     */
+    public int getCachedMark(int index) {
+        return marks[index];
+    }
+
+    /**
+     * Caches the mark of an empty tile, the mark must only depend on the pieces within 4 tiles on the four lines
+     * through the tile
+     *
+     * @param index Bit index of the tile
+     * @param mark  The mark
+     */
+    public void cacheMark(int index, int mark) {
+        if (marks == null) {
+            //only positions used by a search pay for the cache
+            marks = new int[TILE_NUM];
+            markHistory = new int[2 * TILE_NUM * 8 * MARK_DISTANCE];
+            markHistoryStarts = new int[TILE_NUM];
+        }
+        marks[index] = mark;
+        markedTiles[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Returns the Zobrist hash of the chessboard
+     *
+     * @return 64-bit hash value
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Checks whether a tile is in the candidate set
+     *
+     * @param index Bit index of the tile
+     * @return A boolean indicates whether the tile is an empty tile near other pieces
+     */
+    public boolean isCandidate(int index) {
+        return (candidates[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns the first candidate tile at or after a bit index, candidates are visited in the same order as
+     * scanning the chessboard row by row
+     *
+     * @param index Bit index to start from
+     * @return Bit index of the candidate tile, or -1 if there are no more candidates
+     */
+    public int nextCandidate(int index) {
+        int word = index >>> 6;
+        if (word >= WORD_NUM) {
+            return -1;
+        }
+        long bits = candidates[word] & (-1L << index);
+        while (bits == 0) {
+            if (++word == WORD_NUM) {
+                return -1;
+            }
+            bits = candidates[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Returns the number of candidate tiles
+     *
+     * @return Number of candidate tiles
+     */
+    public int getCandidateCount() {
+        int count = 0;
+        for (long word : candidates) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the score of the whole chessboard for a player, the score is maintained incrementally
+     *
+     * @param pieceType Type of the player, 1 for black and -1 for white
+     * @return Score of the player minus score of the opponent
+     */
+    public int evaluate(int pieceType) {
+        return evaluator.evaluate(pieceType);
+    }
+
+    /**
+     * Returns the bit index of the last move in the move stack
+     *
+     * @return Bit index of the last move, or -1 if no move has been made
+     */
+    public int getLastMove() {
+        return moveCount == 0 ? -1 : moveStack[moveCount - 1];
+    }
+
+    /**
+     * Returns the number of moves in the move stack
+     *
+     * @return Number of moves made on this position
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the new position after next move, the original position is not modified
+     *
+     * @param x         X coordinate of next move
+     * @param y         Y coordinate of next move
+     * @param pieceType Type of piece, 1 for black and -1 for white
+     * @return New position after next move
+     */
+    public Position next(int x, int y, int pieceType) {
+        Position position = new Position(this);
+        position.makeMove(x, y, pieceType);
+        return position;
+    }
+
+    /**
+     * Returns the number of pieces on the chessboard
+     *
+     * @return Number of pieces
+     */
+    public int getStoneCount() {
+        return stoneCount;
+    }
+
+    /**
+     * Converts the bitboards to a 2-dimensional chessboard
+     *
+     * @return 2-dimensional array represents the chessboard
+     */
+    public int[][] toArray() {
+        int[][] chess = new int[SIZE][SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                chess[i][j] = get(i, j);
+            }
+        }
+        return chess;
+    }
+}
@@ -0,0 +1,297 @@
+package ai.board;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is a transposition table of fixed size backed by primitive arrays
+ * <p>
+ * The table holds a power of two number of buckets with two entries each. An entry is a 64-bit Zobrist key and one
+ * long packing the score, the best move, the remaining search depth, the bound type and the generation of the search
+ * that stored it. The first entry of a bucket is replaced by deeper searches and by entries of newer searches, the
+ * second entry is always replaced, so a deep result survives while shallow ones keep being cached.
+ * <p>
+ * A probe returns the packed entry or 0 if the position is missing, and the fields are read with the static
+ * getters, so no object is allocated per entry.
+ * <p>
+ * The table is shared by concurrent search threads without locks. The key is stored XORed with its entry, a probe
+ * only accepts an entry whose stored key XORed back gives the probed key, so an entry and a key written by two
+ * different threads, or a long torn by a non-atomic write, are rejected as a miss instead of being read as a wrong
+ * position. The keys and entries of a bucket are interleaved in one array and take 32 bytes, so a probe touches a
+ * single cache line. The probe and store counters are striped {@link LongAdder}s, which threads update without
+ * contending on one shared variable.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class TranspositionTable {
+    /**
+     * Bound type of a score searched with a window containing it
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * Bound type of a score produced by a beta cutoff, the real score is greater than or equal to it
+     */
+    public static final int LOWER_BOUND = 2;
+
+    /**
+     * Bound type of a score produced when no move reached alpha, the real score is less than or equal to it
+     */
+    public static final int UPPER_BOUND = 3;
+
+    /**
+     * Number of entries in a bucket
+     */
+    private static final int BUCKET_SIZE = 2;
+
+    /**
+     * Offsets of the fields in a packed entry, the score takes the lowest 32 bits
+     */
+    private static final int MOVE_SHIFT = 32;
+
+    private static final int DEPTH_SHIFT = 40;
+
+    private static final int BOUND_SHIFT = 48;
+
+    private static final int GENERATION_SHIFT = 50;
+
+    /**
+     * Mask of the move, depth and generation fields
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Mask of the bound field
+     */
+    private static final int BOUND_MASK = 0x3;
+
+    /**
+     * Number of longs used by one entry, the key XORed with the entry followed by the packed entry
+     */
+    private static final int SLOT_SIZE = 2;
+
+    /**
+     * Entries of all the buckets, an entry is empty if its packed long is 0
+     */
+    private final long[] slots;
+
+    /**
+     * Mask selecting the bucket of a key
+     */
+    private final int bucketMask;
+
+    /**
+     * Generation of the running search
+     */
+    private int generation;
+
+    /**
+     * Number of probes
+     */
+    private final LongAdder probes = new LongAdder();
+
+    /**
+     * Number of probes that found the position
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of stored entries
+     */
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * Number of stored entries that overwrote an entry of another position
+     */
+    private final LongAdder overwrites = new LongAdder();
+
+    /**
+     * Creates an empty table
+     *
+     * @param bits Base 2 logarithm of the number of buckets
+     */
+    public TranspositionTable(int bits) {
+        slots = new long[(BUCKET_SIZE * SLOT_SIZE) << bits];
+        bucketMask = (1 << bits) - 1;
+    }
+
+    /**
+     * Starts a new generation, the entries of older searches become the first to be replaced
+     */
+    public void newSearch() {
+        generation = (generation + 1) & BYTE_MASK;
+    }
+
+    /**
+     * Removes all the entries
+     */
+    public void clear() {
+        Arrays.fill(slots, 0L);
+    }
+
+    /**
+     * Resets the probe and store counters
+     */
+    public void resetCounters() {
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        overwrites.reset();
+    }
+
+    /**
+     * Returns the number of entries the table can hold
+     *
+     * @return Capacity of the table
+     */
+    public int getCapacity() {
+        return slots.length / SLOT_SIZE;
+    }
+
+    /**
+     * Returns the number of probes since the counters were reset
+     *
+     * @return Number of probes
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * Returns the number of probes that found the position since the counters were reset
+     *
+     * @return Number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of stored entries since the counters were reset
+     *
+     * @return Number of stores
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Returns the number of stored entries that overwrote an entry of another position since the counters were
+     * reset
+     *
+     * @return Number of overwrites
+     */
+    public long getOverwrites() {
+        return overwrites.sum();
+    }
+
+    /**
+     * Looks up a position
+     *
+     * @param key Zobrist hash of the position
+     * @return The packed entry, or 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucket(key);
+        for (int i = bucket; i < bucket + BUCKET_SIZE * SLOT_SIZE; i += SLOT_SIZE) {
+            long entry = slots[i + 1];
+            if (entry != 0 && (slots[i] ^ entry) == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Stores the result of a search
+     *
+     * @param key   Zobrist hash of the position
+     * @param depth Remaining search depth of the position
+     * @param bound Bound type of the score
+     * @param score Score of the position
+     * @param move  Bit index of the best move, or -1 if there is none
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        long entry = (score & 0xFFFFFFFFL) | (long)((move + 1) & BYTE_MASK) << MOVE_SHIFT
+            | (long)Math.min(Math.max(depth, 0), BYTE_MASK) << DEPTH_SHIFT | (long)bound << BOUND_SHIFT
+            | (long)generation << GENERATION_SHIFT;
+
+        int slot = bucket(key);
+        long old = slots[slot + 1];
+        //the depth-preferred entry, kept unless the new result is deeper or the old one is from an older search
+        if (old != 0 && (slots[slot] ^ old) != key && getGeneration(old) == generation && depth < getDepth(old)) {
+            //the always-replace entry
+            slot += SLOT_SIZE;
+            old = slots[slot + 1];
+        }
+        stores.increment();
+        if (old != 0 && (slots[slot] ^ old) != key) {
+            overwrites.increment();
+        }
+        slots[slot] = key ^ entry;
+        slots[slot + 1] = entry;
+    }
+
+    /**
+     * Returns the score of an entry
+     *
+     * @param entry The packed entry
+     * @return Score of the position
+     */
+    public static int getScore(long entry) {
+        return (int)entry;
+    }
+
+    /**
+     * Returns the best move of an entry
+     *
+     * @param entry The packed entry
+     * @return Bit index of the best move, or -1 if there is none
+     */
+    public static int getMove(long entry) {
+        return (int)(entry >>> MOVE_SHIFT & BYTE_MASK) - 1;
+    }
+
+    /**
+     * Returns the remaining search depth of an entry
+     *
+     * @param entry The packed entry
+     * @return Depth searched below the position
+     */
+    public static int getDepth(long entry) {
+        return (int)(entry >>> DEPTH_SHIFT & BYTE_MASK);
+    }
+
+    /**
+     * Returns the bound type of an entry
+     *
+     * @param entry The packed entry
+     * @return One of {@link #EXACT}, {@link #LOWER_BOUND} and {@link #UPPER_BOUND}
+     */
+    public static int getBound(long entry) {
+        return (int)(entry >>> BOUND_SHIFT & BOUND_MASK);
+    }
+
+    /**
+     * Returns the generation of an entry
+     *
+     * @param entry The packed entry
+     * @return Generation of the search that stored the entry
+     */
+    private static int getGeneration(long entry) {
+        return (int)(entry >>> GENERATION_SHIFT & BYTE_MASK);
+    }
+
+    /**
+     * Returns the first entry of the bucket of a key
+     *
+     * @param key Zobrist hash of the position
+     * @return Position of the first entry of the bucket in the slot array
+     */
+    private int bucket(long key) {
+        return ((int)key & bucketMask) * BUCKET_SIZE * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,67 @@
+package ai.board;
+
+import ai.constant.AiConst;
+
+import java.util.Random;
+
+/**
+ * This class holds the Zobrist keys of the chessboard
+ * <p>
+ * Every tile owns one 64-bit key for black and one for white, the hash of a chessboard is the XOR of the keys
+ * of all placed pieces. The keys are generated from a fixed seed so that hashes are reproducible between runs.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class Zobrist {
+    /**
+     * Seed of the key generator
+     */
+    private static final long SEED = 0x4A476F6D6F6B75L;
+
+    /**
+     * Zobrist keys with the format of [colour][bit index], colour 0 for black and 1 for white
+     */
+    private static final long[][] KEYS = new long[2][Position.TILE_NUM];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < KEYS.length; i++) {
+            for (int j = 0; j < KEYS[0].length; j++) {
+                KEYS[i][j] = random.nextLong();
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the Zobrist key of a piece on a tile
+     *
+     * @param index     Bit index of the tile
+     * @param pieceType Type of piece, 1 for black and -1 for white
+     * @return Zobrist key of the piece
+     */
+    public static long key(int index, int pieceType) {
+        return KEYS[pieceType == AiConst.BLACK_STONE ? 0 : 1][index];
+    }
+
+    /**
+     * Calculates the hash of a 2-dimensional chessboard from scratch
+     *
+     * @param chess 2-dimensional array represents the chessboard
+     * @return Hash value
+     */
+    public static long hash(int[][] chess) {
+        long hash = 0L;
+        for (int i = 0; i < Position.SIZE; i++) {
+            for (int j = 0; j < Position.SIZE; j++) {
+                if (chess[i][j] != AiConst.EMPTY_STONE) {
+                    hash ^= key(Position.index(i, j), chess[i][j]);
+                }
+            }
+        }
+        return hash;
+    }
+}
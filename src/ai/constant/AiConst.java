@@ -68,6 +68,22 @@ public class AiConst {
      */
     public static final int WINDOW_SIZE_ASPIRATION = 100;
 
+    /**
+     * Default time budget of one move in milliseconds for iterative deepening and Monte Carlo tree search
+     */
+    public static final int DEFAULT_TIME_BUDGET = 3000;
+
+    /**
+     * Default maximum number of iterations of one Monte Carlo tree search, which also stops at the time budget
+     */
+    public static final int MCTS_ITERATIONS = 50000;
+
+    /**
+     * Base 2 logarithm of the number of buckets of the transposition table, 2^18 buckets of two 16-byte entries
+     * take 8 MB
+     */
+    public static final int TRANSPOSITION_TABLE_BITS = 18;
+
     /**
      * Threat Direction
      */
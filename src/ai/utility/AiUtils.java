@@ -1,12 +1,10 @@
 package ai.utility;
 
 import ai.GreedyBestFirst;
-import gui.constant.GuiConst;
+import ai.board.MoveList;
+import ai.board.Position;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.List;
 
 /**
  * This class is an utility class for providing some array manipulation functions
@@ -19,20 +17,6 @@ public class AiUtils {
     private AiUtils() {
     }
 
-    private static Comparator<int[]> moveComparator_asc = new Comparator<int[]>() {
-        @Override
-        public int compare(int[] moveOne, int[] moveTwo) {
-            return moveOne[2] - moveTwo[2];
-        }
-    };
-
-    private static Comparator<int[]> moveComparator_desc = new Comparator<int[]>() {
-        @Override
-        public int compare(int[] moveOne, int[] moveTwo) {
-            return moveTwo[2] - moveOne[2];
-        }
-    };
-
     /**
      * Returns new 2-dimensional array with same contents (deep copy)
      *
@@ -49,67 +33,49 @@ public class AiUtils {
     }
 
     /**
-     * Returns the new chessboard after next move
-     *
-     * @param chess     Original chessboard
-     * @param x         X coordinate of next move
-     * @param y         Y coordinate of next move
-     * @param pieceType Type of piece, 1 for black and -1 for white
-     * @return          new array after next move
-     */
-    public static int[][] nextMoveChessboard(int[][] chess, int x, int y, int pieceType) {
-        int[][] a = copyArray(chess);
-        a[x][y] = pieceType;
-        return a;
-    }
-
-    /**
-     * Generates all possible moves and sorted by their manhattan distances
+     * Generates all candidate moves {@link Position#nextCandidate(int)} and sorted by their manhattan distances
      * to the last move
      *
-     * @param chess 2-dimension array represents the chessboard
-     * @param x     X coordinate of the last move
-     * @param y     Y coordinate of the last move
-     * @return      A list contains all possible moves with the format of [x, y, dist]
+     * @param position The chessboard
+     * @param x        X coordinate of the last move
+     * @param y        Y coordinate of the last move
+     * @param moves    The list to be filled, its previous moves are cleared
+     * @return         The list contains all possible moves scored by their distances
      */
-    public static List<int[]> moveGeneratorWithDistanceSort(int[][] chess, int x, int y) {
-        List<int[]> moves = new ArrayList<>();
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                if (chess[i][j] == 0) {
-                    moves.add(new int[] {i, j, AiUtils.ManhattanDistance(i, j, x, y)});
-                }
-            }
+    public static MoveList moveGeneratorWithDistanceSort(Position position, int x, int y, MoveList moves) {
+        moves.clear();
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            moves.add(index, AiUtils.ManhattanDistance(Position.toX(index), Position.toY(index), x, y));
         }
-        moves.sort(moveComparator_asc);
+        moves.sortAscending();
         return moves;
-
     }
 
     /**
-     * Generates all possible moves and sorted by a heuristic function{@see GreedyBestFirst}
+     * Generates all candidate moves {@link Position#nextCandidate(int)} and sorted by a heuristic
+     * function {@link GreedyBestFirst}, the marks are cached by the chessboard and only the best n moves are sorted
      *
-     * @param chess 2-dimension array represents the chessboard
-     * @param n     Number of required moves
-     * @return      A List contains the best n moves with the format of [x, y, value]
+     * @param position The chessboard
+     * @param n        Number of required moves
+     * @param moves    The list to be filled, its previous moves are cleared
+     * @return         The list contains the best n moves scored by the heuristic function
      */
-    public static List<int[]> moveGeneratorWithHeuristicSort(int[][] chess, int n) {
-        List<int[]> moves = new ArrayList<>(100);
-        for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                if (chess[i][j] == 0) {
-                    moves.add(new int[] {i, j, GreedyBestFirst.totalMark(chess, i, j)});
-                }
+    public static MoveList moveGeneratorWithHeuristicSort(Position position, int n, MoveList moves) {
+        moves.startOffers(n);
+        for (int index = position.nextCandidate(0); index >= 0; index = position.nextCandidate(index + 1)) {
+            //only the tiles near the moves made since the mark was cached are evaluated again
+            int mark;
+            if (position.isMarkCached(index)) {
+                mark = position.getCachedMark(index);
+            } else {
+                mark = GreedyBestFirst.totalMark(position, Position.toX(index), Position.toY(index));
+                position.cacheMark(index, mark);
             }
+            moves.offer(index, mark);
         }
 
-        moves.sort(moveComparator_desc);
-
-        if (moves.size() > n) {
-            return moves.subList(0, n);
-        } else {
-            return moves;
-        }
+        moves.sortOffered();
+        return moves;
     }
 
     public static double safeDivide(double a, double b) {
@@ -1,357 +1,297 @@
 package ai.utility;
 
+import ai.board.Position;
 import ai.constant.AiConst;
 import gui.Chessboard;
 import gui.constant.GuiConst;
 
 /**
  * This class is an utility class for scanning the chessboard
+ * <p>
+ * Rows are never returned as Strings. The 8 adjacent pieces of a tile are returned as a packed line code
+ * {@link LinePatternTable}, longer rows are written into a byte array supplied by the caller with one tile code
+ * per element and the number of written tiles is returned. The class holds no mutable state, so scanning does not
+ * allocate and is safe to be called from several threads.
  *
  * @author cirun zhang
- * @version 1.1
+ * @version 1.2
  */
 public class ChessboardScanUtils {
-    private static StringBuilder builder = new StringBuilder();
+    /**
+     * Code of the tiles marked as 't' in the patterns of {@link AiConst}, a row written into a byte array never
+     * contains border tiles so the code of border is reused
+     */
+    public static final int THREAT = LinePatternTable.BORDER;
+
+    /**
+     * Number of tiles of a row returned by the *8 scanners, the tile itself and 4 tiles on each side
+     */
+    public static final int ADJACENT_LENGTH = 9;
+
+    /**
+     * Minimum length of a byte array which can hold any row of the chessboard
+     */
+    public static final int ROW_LENGTH = GuiConst.TILE_NUM_PER_ROW;
+
+    /**
+     * Rows of the threat scans which contain a threat
+     */
+    private static final String[] THREATS =
+        {AiConst.IMPLICATE_FOUR_DOUBLE_EMPTY, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_A,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_B, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_C,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_D, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_E, AiConst.IMPLICATE_THREE_A,
+            AiConst.IMPLICATE_THREE_B, AiConst.IMPLICATE_THREE_C, AiConst.IMPLICATE_THREE_D};
+
+    private static final PatternMatcher THREAT_MATCHER = new PatternMatcher(new String[][] {THREATS});
 
     private ChessboardScanUtils() {
     }
 
     /**
-     * Returns 8 horizontal pieces surround a specific piece
+     * Returns the code of a tile, tiles outside the chessboard are coded as border
      *
-     * @param chess          The 2-dimension array represents the chessboard
-     * @param xArrayPosition X-coordinate of the piece
-     * @param yArrayPosition Y-coordinate of the piece
-     * @param pieceType      Type of the piece
-     * @return A horizontal row of pieces in String format
+     * @param position  The chessboard
+     * @param x         X-coordinate of the tile
+     * @param y         Y-coordinate of the tile
+     * @param pieceType Type of the ally piece
+     * @return Code of the tile
      */
-    public static String horizontalAdjacentPieces8(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        StringBuilder builder = new StringBuilder();
-        //check from left to target
-        for (int i = xArrayPosition - 4; i < xArrayPosition; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[i][yArrayPosition];
-                //0 for empty, 1 for ally, 2 for opponent
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
+    private static int tile(Position position, int x, int y, int pieceType) {
+        if (!Chessboard.validateArrayIndex(x) || !Chessboard.validateArrayIndex(y)) {
+            return LinePatternTable.BORDER;
         }
+        return LinePatternTable.encode(position.get(x, y), pieceType);
+    }
 
-        builder.append("1");
+    /**
+     * Returns the packed code of the 8 pieces surround a specific piece in one direction
+     *
+     * @param position  The chessboard
+     * @param x         X-coordinate of the piece
+     * @param y         Y-coordinate of the piece
+     * @param dx        Step of x-coordinate
+     * @param dy        Step of y-coordinate
+     * @param pieceType Type of the piece
+     * @return Code of 9 tiles, tiles outside the chessboard are coded as border
+     */
+    private static int adjacentCode(Position position, int x, int y, int dx, int dy, int pieceType) {
+        int code = 0;
+        for (int i = -4; i <= 4; i++) {
+            int tile = i == 0 ? LinePatternTable.ALLY : tile(position, x + i * dx, y + i * dy, pieceType);
+            code = (code << 2) | tile;
+        }
+        return code;
+    }
 
-        //check from target to right
-        for (int i = xArrayPosition + 1; i < xArrayPosition + 5; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[i][yArrayPosition];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+    /**
+     * Writes the 10 pieces surround a specific piece in one direction, tiles outside the chessboard are skipped
+     *
+     * @param position  The chessboard
+     * @param x         X-coordinate of the piece
+     * @param y         Y-coordinate of the piece
+     * @param dx        Step of x-coordinate
+     * @param dy        Step of y-coordinate
+     * @param pieceType Type of the piece
+     * @param centre    Code of the centre piece
+     * @param row       Array receiving the codes of the tiles
+     * @return Number of tiles written
+     */
+    private static int adjacentRow(Position position, int x, int y, int dx, int dy, int pieceType, int centre,
+        byte[] row) {
+        int length = 0;
+        for (int i = -5; i <= 5; i++) {
+            int tile = i == 0 ? centre : tile(position, x + i * dx, y + i * dy, pieceType);
+            if (tile != LinePatternTable.BORDER || i == 0) {
+                row[length++] = (byte)tile;
             }
         }
+        return length;
+    }
 
-        return builder.toString();
+    /**
+     * Returns 8 horizontal pieces surround a specific piece
+     *
+     * @param position       The chessboard
+     * @param xArrayPosition X-coordinate of the piece
+     * @param yArrayPosition Y-coordinate of the piece
+     * @param pieceType      Type of the piece
+     * @return A horizontal row of {@link #ADJACENT_LENGTH} pieces in packed code
+     */
+    public static int horizontalAdjacentPieces8(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType) {
+        return adjacentCode(position, xArrayPosition, yArrayPosition, 1, 0, pieceType);
     }
 
     /**
      * Returns 8 vertical pieces surround a specific piece
      *
-     * @param chess          The 2-dimension array represents the chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X-coordinate of the piece
      * @param yArrayPosition Y-coordinate of the piece
      * @param pieceType      Type of the piece
-     * @return A vertical row of pieces in String format
+     * @return A vertical row of {@link #ADJACENT_LENGTH} pieces in packed code
      */
-    public static String verticalAdjacentPieces8(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        StringBuilder builder = new StringBuilder();
-        //check from top to target
-        for (int i = yArrayPosition - 4; i < yArrayPosition; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[xArrayPosition][i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append("1");
-
-        //check from target to bottom
-        for (int i = yArrayPosition + 1; i < yArrayPosition + 5; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[xArrayPosition][i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        return builder.toString();
+    public static int verticalAdjacentPieces8(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType) {
+        return adjacentCode(position, xArrayPosition, yArrayPosition, 0, 1, pieceType);
     }
 
     /**
      * Returns 8 diagonal pieces surround a specific piece
      *
-     * @param chess          The 2-dimension array represents the chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X-coordinate of the piece
      * @param yArrayPosition Y-coordinate of the piece
      * @param pieceType      Type of the piece
-     * @return A diagonal row of pieces in String format
+     * @return A diagonal row of {@link #ADJACENT_LENGTH} pieces in packed code
      */
-    public static String diagonalAdjacentPieces8(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        StringBuilder builder = new StringBuilder();
-        //check from left top to target
-        for (int i = 4; i > 0; i--) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard
-                .validateArrayIndex(yArrayPosition - i)) {
-                int piece = chess[xArrayPosition - i][yArrayPosition - i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append("1");
-
-        //check from target to right bottom
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard
-                .validateArrayIndex(yArrayPosition + i)) {
-                int piece = chess[xArrayPosition + i][yArrayPosition + i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        return builder.toString();
+    public static int diagonalAdjacentPieces8(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType) {
+        return adjacentCode(position, xArrayPosition, yArrayPosition, 1, 1, pieceType);
     }
 
     /**
      * Returns 8 anti-diagonal pieces surround a specific piece
      *
-     * @param chess          The 2-dimension array represents the chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X-coordinate of the piece
      * @param yArrayPosition Y-coordinate of the piece
      * @param pieceType      Type of the piece
-     * @return A anti-diagonal row of pieces in String format
+     * @return A anti-diagonal row of {@link #ADJACENT_LENGTH} pieces in packed code
      */
-    public static String antiDiagonalAdjacentPieces8(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        StringBuilder builder = new StringBuilder();
-        //check from right top to target
-        for (int i = 4; i > 0; i--) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard
-                .validateArrayIndex(yArrayPosition - i)) {
-                int piece = chess[xArrayPosition + i][yArrayPosition - i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append("1");
-
-        //check from target to left bottom
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard
-                .validateArrayIndex(yArrayPosition + i)) {
-                int piece = chess[xArrayPosition - i][yArrayPosition + i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        return builder.toString();
+    public static int antiDiagonalAdjacentPieces8(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType) {
+        return adjacentCode(position, xArrayPosition, yArrayPosition, -1, 1, pieceType);
     }
 
-
-
     /**
      * Get the adjacent 10 vertical pieces surround by the target piece
      *
-     * @param chess          The chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X coordinate of the target piece
      * @param yArrayPosition Y coordinate of the target piece
      * @param pieceType      Piece type of the AI
-     * @param c              The char represent the centre piece
-     * @return A string represent the nearby pieces
+     * @param centre         Code of the centre piece, {@link LinePatternTable#ALLY} or {@link #THREAT}
+     * @param row            Array receiving the nearby pieces, at least 11 tiles long
+     * @return Number of pieces written
      */
-    public static String verticalAdjacentPieces10(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType,
-        char c) {
-        //check from top to target
-        for (int i = xArrayPosition - 5; i < xArrayPosition; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[i][yArrayPosition];
-                //0 for empty, 1 for ally, 2 for opponent
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append(c);
-
-        //check from target to bottom
-        for (int i = xArrayPosition + 1; i < xArrayPosition + 6; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[i][yArrayPosition];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-        builder.setLength(0);
-        return builder.toString();
+    public static int verticalAdjacentPieces10(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType, int centre, byte[] row) {
+        return adjacentRow(position, xArrayPosition, yArrayPosition, 1, 0, pieceType, centre, row);
     }
 
     /**
      * Get the adjacent 10 horizontal pieces surround by the target piece
      *
-     * @param chess          The chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X coordinate of the target piece
      * @param yArrayPosition Y coordinate of the target piece
      * @param pieceType      Piece type of the AI
-     * @param c              The char represent the centre piece
-     * @return A string represent the nearby pieces
+     * @param centre         Code of the centre piece, {@link LinePatternTable#ALLY} or {@link #THREAT}
+     * @param row            Array receiving the nearby pieces, at least 11 tiles long
+     * @return Number of pieces written
      */
-    public static String horizontalAdjacentPieces10(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType,
-        char c) {
-        //check from left to target
-        for (int i = yArrayPosition - 5; i < yArrayPosition; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[xArrayPosition][i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append(c);
-
-        //check from target to right
-        for (int i = yArrayPosition + 1; i < yArrayPosition + 6; i++) {
-            if (Chessboard.validateArrayIndex(i)) {
-                int piece = chess[xArrayPosition][i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-        builder.setLength(0);
-        return builder.toString();
+    public static int horizontalAdjacentPieces10(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType, int centre, byte[] row) {
+        return adjacentRow(position, xArrayPosition, yArrayPosition, 0, 1, pieceType, centre, row);
     }
 
     /**
      * Get the adjacent 10 diagonal pieces surround by the target piece
      *
-     * @param chess          The chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X coordinate of the target piece
      * @param yArrayPosition Y coordinate of the target piece
      * @param pieceType      Piece type of the AI
-     * @param c              The char represent the centre piece
-     * @return A string represent the nearby pieces
+     * @param centre         Code of the centre piece, {@link LinePatternTable#ALLY} or {@link #THREAT}
+     * @param row            Array receiving the nearby pieces, at least 11 tiles long
+     * @return Number of pieces written
      */
-    public static String diagonalAdjacentPieces10(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType,
-        char c) {
-        //check from left top to target
-        for (int i = 5; i > 0; i--) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard
-                .validateArrayIndex(yArrayPosition - i)) {
-                int piece = chess[xArrayPosition - i][yArrayPosition - i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append(c);
-
-        //check from target to right bottom
-        for (int i = 1; i < 6; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard
-                .validateArrayIndex(yArrayPosition + i)) {
-                int piece = chess[xArrayPosition + i][yArrayPosition + i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.setLength(0);
-        return builder.toString();
+    public static int diagonalAdjacentPieces10(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType, int centre, byte[] row) {
+        return adjacentRow(position, xArrayPosition, yArrayPosition, 1, 1, pieceType, centre, row);
     }
 
     /**
      * Get the adjacent 10 anti-diagonal pieces surround by the target piece
      *
-     * @param chess          The chessboard
+     * @param position       The chessboard
      * @param xArrayPosition X coordinate of the target piece
      * @param yArrayPosition Y coordinate of the target piece
      * @param pieceType      Piece type of the AI
-     * @param c              The char represent the centre piece
-     * @return A string represent the nearby pieces
+     * @param centre         Code of the centre piece, {@link LinePatternTable#ALLY} or {@link #THREAT}
+     * @param row            Array receiving the nearby pieces, at least 11 tiles long
+     * @return Number of pieces written
      */
-    public static String antiDiagonalAdjacentPieces10(int[][] chess, int xArrayPosition, int yArrayPosition,
-        int pieceType, char c) {
-        //check from right top to target
-        for (int i = 5; i > 0; i--) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard
-                .validateArrayIndex(yArrayPosition - i)) {
-                int piece = chess[xArrayPosition + i][yArrayPosition - i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.append(c);
-
-        //check from target to left bottom
-        for (int i = 1; i < 6; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard
-                .validateArrayIndex(yArrayPosition + i)) {
-                int piece = chess[xArrayPosition - i][yArrayPosition + i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
-            }
-        }
-
-        builder.setLength(0);
-        return builder.toString();
+    public static int antiDiagonalAdjacentPieces10(Position position, int xArrayPosition, int yArrayPosition,
+        int pieceType, int centre, byte[] row) {
+        return adjacentRow(position, xArrayPosition, yArrayPosition, -1, 1, pieceType, centre, row);
     }
 
     /**
      * Get the pieces on the horizontal row which the given two pieces lied on it.
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the first piece
      * @param y         Y coordinate of the first piece
      * @param lastX     X coordinate of the second piece
      * @param lastY     Y coordinate of the second piece
      * @param pieceType Piece type if the AI
-     * @return A string represent the pieces in one row
+     * @param row       Array receiving the pieces, at least {@link #ROW_LENGTH} tiles long
+     * @return Number of pieces written
      */
-    public static String scanHorizontal(int[][] chess, int x, int y, int lastX, int lastY, int pieceType) {
+    public static int scanHorizontal(Position position, int x, int y, int lastX, int lastY, int pieceType,
+        byte[] row) {
+        int length = 0;
         for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            int piece = chess[x][i];
             if (i == y || i == lastY) {
-                builder.append("t");
+                row[length++] = THREAT;
             } else {
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, x, i, pieceType);
             }
         }
-
-        builder.setLength(0);
-        return builder.toString();
+        return length;
     }
 
     /**
      * Get the pieces on the vertical row which the given two pieces lied on it.
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the first piece
      * @param y         Y coordinate of the first piece
      * @param lastX     X coordinate of the second piece
      * @param lastY     Y coordinate of the second piece
      * @param pieceType Piece type if the AI
-     * @return A string represent the pieces in one row
+     * @param row       Array receiving the pieces, at least {@link #ROW_LENGTH} tiles long
+     * @return Number of pieces written
      */
-    public static String scanVertical(int[][] chess, int x, int y, int lastX, int lastY, int pieceType) {
+    public static int scanVertical(Position position, int x, int y, int lastX, int lastY, int pieceType,
+        byte[] row) {
+        int length = 0;
         for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
-            int piece = chess[i][y];
             if (i == x || i == lastX) {
-                builder.append("t");
+                row[length++] = THREAT;
             } else {
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, i, y, pieceType);
             }
         }
-
-        builder.setLength(0);
-        return builder.toString();
+        return length;
     }
 
     /**
      * Get the pieces on the diagonal row which the given two pieces lied on it.
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the first piece
      * @param y         Y coordinate of the first piece
      * @param lastX     X coordinate of the second piece
      * @param lastY     Y coordinate of the second piece
      * @param pieceType Piece type if the AI
-     * @return A string represent the pieces in one row
+     * @param row       Array receiving the pieces, at least {@link #ROW_LENGTH} tiles long
+     * @return Number of pieces written
      */
-    public static String scanDiagonal(int[][] chess, int x, int y, int lastX, int lastY, int pieceType) {
+    public static int scanDiagonal(Position position, int x, int y, int lastX, int lastY, int pieceType,
+        byte[] row) {
         //Scans the chessboard from right top to left bottom diagonally
         int upperBoundX = x;
         int upperBoundY = y;
@@ -362,31 +302,31 @@ public class ChessboardScanUtils {
             upperBoundX--;
         }
 
+        int length = 0;
         for (int i = upperBoundX, j = upperBoundY; i <= upperBoundY && j >= upperBoundX; i++, j--) {
             if ((i == x && j == y) || (i == lastX && j == lastY)) {
-                builder.append("t");
+                row[length++] = THREAT;
             } else {
-                int piece = chess[i][j];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, i, j, pieceType);
             }
         }
-
-        builder.setLength(0);
-        return builder.toString();
+        return length;
     }
 
     /**
      * Get the pieces on the anti-diagonal row which the given two pieces lied on it.
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X coordinate of the first piece
      * @param y         Y coordinate of the first piece
      * @param lastX     X coordinate of the second piece
      * @param lastY     Y coordinate of the second piece
      * @param pieceType Piece type if the AI
-     * @return A string represent the pieces in one row
+     * @param row       Array receiving the pieces, at least {@link #ROW_LENGTH} tiles long
+     * @return Number of pieces written
      */
-    public static String scanAntiDiagonal(int[][] chess, int x, int y, int lastX, int lastY, int pieceType) {
+    public static int scanAntiDiagonal(Position position, int x, int y, int lastX, int lastY, int pieceType,
+        byte[] row) {
         //Scans the chessboard from left top to right bottom antiDiagonally
         int upperBoundX = x;
         int upperBoundY = y;
@@ -402,156 +342,152 @@ public class ChessboardScanUtils {
             lowerBoundY++;
         }
 
+        int length = 0;
         for (int i = upperBoundX, j = upperBoundY; i <= lowerBoundX && j <= lowerBoundY; i++, j++) {
-            int piece = chess[i][j];
             if ((i == x && j == y) || (i == lastX && j == lastY)) {
-                builder.append("t");
+                row[length++] = THREAT;
             } else {
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, i, j, pieceType);
             }
-
         }
-        builder.setLength(0);
-        return builder.toString();
+        return length;
     }
 
     /**
      * Scans threats of the chessboard from top to bottom vertically
      *
-     * @param chess     2-dimension array represents the chessboard
+     * @param position  The chessboard
      * @param pieceType Indicates which player moved, 1 for black -1 for white
+     * @param row       Array used for holding one row, at least {@link #ROW_LENGTH} tiles long
      * @return A boolean indicates existing a threat or not
      */
-    public static boolean scanVerticalThreat(int[][] chess, int pieceType) {
+    public static boolean scanVerticalThreat(Position position, int pieceType, byte[] row) {
         for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
+            int length = 0;
             for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                int piece = chess[i][j];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, i, j, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            builder.delete(0, builder.length());
         }
-        builder.setLength(0);
         return false;
     }
 
     /**
      * Scans threats of the chessboard from left to right horizontally
      *
-     * @param chess     2-dimension array represents the chessboard
+     * @param position  The chessboard
      * @param pieceType Indicates which player moved, 1 for black -1 for white
+     * @param row       Array used for holding one row, at least {@link #ROW_LENGTH} tiles long
      * @return A boolean indicates existing a threat or not
      */
-    public static boolean scanHorizontalThreat(int[][] chess, int pieceType) {
-
+    public static boolean scanHorizontalThreat(Position position, int pieceType, byte[] row) {
         for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
+            int length = 0;
             for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                int piece = chess[j][i];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, j, i, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            builder.delete(0, builder.length());
         }
-        builder.setLength(0);
         return false;
     }
 
     /**
      * Scans threats of the chessboard from right top to left bottom diagonally
      *
-     * @param chess     2-dimension array represents the chessboard
+     * @param position  The chessboard
      * @param pieceType Indicates which player moved, 1 for black -1 for white
+     * @param row       Array used for holding one row, at least {@link #ROW_LENGTH} tiles long
      * @return A boolean indicates existing a threat or not
      */
-
-    public static boolean scanDiagonalThreat(int[][] chess, int pieceType) {
+    public static boolean scanDiagonalThreat(Position position, int pieceType, byte[] row) {
         //upper half chessboard
         for (int i = 10; i >= 0; i--) {
             int count = 0;
+            int length = 0;
             for (int j = i; j <= 14; j++) {
-                int piece = chess[j][count++];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, j, count++, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            builder.delete(0, builder.length());
         }
 
         //lower half chessboard
         for (int i = 1; i <= 10; i++) {
             int count = 0;
+            int length = 0;
             for (int j = i; j <= 14; j++) {
-                int piece = chess[count++][j];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, count++, j, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            builder.delete(0, builder.length());
         }
-        builder.setLength(0);
         return false;
     }
 
     /**
      * Scans threats of the chessboard from left top to right bottom anti-diagonally.
      *
-     * @param chess     2-dimension array represents the chessboard
+     * @param position  The chessboard
      * @param pieceType Indicates which player moved, 1 for black -1 for white
+     * @param row       Array used for holding one row, at least {@link #ROW_LENGTH} tiles long
      * @return A boolean indicates existing a threat or not
      */
-    public static boolean scanAntiDiagonalThreat(int[][] chess, int pieceType) {
+    public static boolean scanAntiDiagonalThreat(Position position, int pieceType, byte[] row) {
         //upper half chessboard
         for (int i = 4; i <= 14; i++) {
             int count = 0;
+            int length = 0;
             for (int j = i; j >= 0; j--) {
-                int piece = chess[count++][j];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, count++, j, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            ;
-            builder.delete(0, builder.length());
         }
 
         //lower half chessboard
         for (int i = 0; i <= 10; i++) {
             int count = 14;
+            int length = 0;
             for (int j = i; j <= 14; j++) {
-                int piece = chess[j][count--];
-                builder.append(piece == 0 ? "0" : piece == pieceType ? "1" : "2");
+                row[length++] = (byte)tile(position, j, count--, pieceType);
             }
-            if (detectThreat(builder.toString())) {
+            if (detectThreat(row, length)) {
                 return true;
             }
-            builder.delete(0, builder.length());
         }
-        builder.setLength(0);
         return false;
     }
 
     /**
      * Detects whether a sequence of pieces contains threat.
      *
-     * @param pieces A sequence of pieces
+     * @param row    A sequence of pieces
+     * @param length Number of pieces in the sequence
      * @return A boolean indicates existing a threat or not
      */
-    private static boolean detectThreat(String pieces) {
-        if (pieces.contains(AiConst.IMPLICATE_FOUR_DOUBLE_EMPTY)) {
-            return true;
-        }
+    private static boolean detectThreat(byte[] row, int length) {
+        return THREAT_MATCHER.match(row, length) != 0;
+    }
 
-        return pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_A) || pieces
-            .contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_B) || pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_C)
-            || pieces.contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_D) || pieces
-            .contains(AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_E) || pieces.contains(AiConst.IMPLICATE_THREE_A) || pieces
-            .contains(AiConst.IMPLICATE_THREE_B) || pieces.contains(AiConst.IMPLICATE_THREE_C) || pieces
-            .contains(AiConst.IMPLICATE_THREE_D);
+    /**
+     * Packs a row of pieces into a line code, the row must not contain {@link #THREAT} tiles
+     *
+     * @param row    A sequence of pieces
+     * @param length Number of pieces in the sequence, at most 15
+     * @return The packed line code
+     */
+    public static int encode(byte[] row, int length) {
+        int code = 0;
+        for (int i = 0; i < length; i++) {
+            code = (code << 2) | row[i];
+        }
+        return code;
     }
 }
@@ -1,6 +1,6 @@
 package ai.utility;
 
-import ai.constant.PieceConst;
+import ai.board.Position;
 
 /**
  * This class is an utility class for providing heuristic function for a specific piece(h2)
@@ -12,31 +12,43 @@ public class HeuristicPieceUtils {
     private HeuristicPieceUtils() {
     }
 
+    /**
+     * Number of bits of the counter of one rank in the packed pattern counts
+     */
+    private static final int COUNT_BITS = 8;
+
     /**
      * Returns the score of a specific piece
      *
-     * @param chess     The chessboard
+     * @param position  The chessboard
      * @param x         X-coordinate of the piece
      * @param y         Y-coordinate of the piece
      * @param pieceType Type of the piece
+     * @param row       Array used for holding one line, at least {@link ChessboardScanUtils#ROW_LENGTH} tiles long
      * @return The total evaluation score
      */
-    public static int eval(int[][] chess, int x, int y, int pieceType) {
+    public static int eval(Position position, int x, int y, int pieceType, byte[] row) {
         int score = 0;
-        int[] strategy = new int[7];
-
-        heuristic(ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, y, pieceType, '1'), strategy);
-        heuristic(ChessboardScanUtils.verticalAdjacentPieces10(chess, x, y, pieceType, '1'), strategy);
-        heuristic(ChessboardScanUtils.diagonalAdjacentPieces10(chess, x, y, pieceType, '1'), strategy);
-        heuristic(ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x, y, pieceType, '1'), strategy);
-
-        int num_implicate_five = strategy[0];
-        int num_implicate_four = strategy[1];
-        int num_implicate_four_block = strategy[2];
-        int num_implicate_three = strategy[3];
-        int num_implicate_three_block = strategy[4];
-        int num_implicate_two = strategy[5];
-        int num_implicate_one = strategy[6];
+        //the pattern count of each rank takes 8 bits, the rank is the index of the counter
+        long strategy = 0L;
+        int centre = LinePatternTable.ALLY;
+
+        int length = ChessboardScanUtils.horizontalAdjacentPieces10(position, x, y, pieceType, centre, row);
+        strategy += heuristic(row, length);
+        length = ChessboardScanUtils.verticalAdjacentPieces10(position, x, y, pieceType, centre, row);
+        strategy += heuristic(row, length);
+        length = ChessboardScanUtils.diagonalAdjacentPieces10(position, x, y, pieceType, centre, row);
+        strategy += heuristic(row, length);
+        length = ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x, y, pieceType, centre, row);
+        strategy += heuristic(row, length);
+
+        int num_implicate_five = count(strategy, 0);
+        int num_implicate_four = count(strategy, 1);
+        int num_implicate_four_block = count(strategy, 2);
+        int num_implicate_three = count(strategy, 3);
+        int num_implicate_three_block = count(strategy, 4);
+        int num_implicate_two = count(strategy, 5);
+        int num_implicate_one = count(strategy, 6);
 
         if (num_implicate_four > 1) {
             score += 10000;
@@ -60,52 +72,25 @@ public class HeuristicPieceUtils {
     }
 
     /**
-     * Does pattern matching and statistics.
+     * Does pattern matching on a sequence of pieces
      *
-     * @param row      A sequence of pieces
-     * @param strategy A array for recording the pattern count
+     * @param row    A sequence of pieces
+     * @param length Number of pieces in the sequence
+     * @return The counter of the matched rank incremented by one in the packed counts, 0 if nothing matches
      */
-    private static void heuristic(String row, int[] strategy) {
-        if (row.contains(PieceConst.IMPLICATE_FIVE)) {
-            strategy[0]++;
-            return;
-        }
-
-        if (row.contains(PieceConst.IMPLICATE_FOUR_A)) {
-            strategy[1]++;
-            return;
-        }
-
-        if (row.contains(PieceConst.IMPLICATE_FOUR_BLOCK_A) || row.contains(PieceConst.IMPLICATE_FOUR_BLOCK_B) || row
-            .contains(PieceConst.IMPLICATE_FOUR_BLOCK_C) || row.contains(PieceConst.IMPLICATE_FOUR_BLOCK_D) || row
-            .contains(PieceConst.IMPLICATE_FOUR_BLOCK_E)) {
-            strategy[2]++;
-            return;
-        }
-
-        if (row.contains(PieceConst.IMPLICATE_THREE_A) || row.contains(PieceConst.IMPLICATE_THREE_B) || row
-            .contains(PieceConst.IMPLICATE_THREE_C) || row.contains(PieceConst.IMPLICATE_THREE_D)) {
-            strategy[3]++;
-            return;
-        }
-
-        if (row.contains(PieceConst.IMPLICATE_THREE_BLOCK_A) || row.contains(PieceConst.IMPLICATE_THREE_BLOCK_B) || row
-            .contains(PieceConst.IMPLICATE_THREE_BLOCK_C) || row.contains(PieceConst.IMPLICATE_THREE_BLOCK_D) || row
-            .contains(PieceConst.IMPLICATE_THREE_BLOCK_E) || row.contains(PieceConst.IMPLICATE_THREE_BLOCK_F) || row
-            .contains(PieceConst.IMPLICATE_THREE_BLOCK_G) || row.contains(PieceConst.IMPLICATE_THREE_BLOCK_H) || row
-            .contains(PieceConst.IMPLICATE_THREE_BLOCK_I) || row.contains(PieceConst.IMPLICATE_THREE_BLOCK_J)) {
-            strategy[4]++;
-            return;
-        }
-
-        if (row.contains(PieceConst.IMPLICATE_TWO_A) || row.contains(PieceConst.IMPLICATE_TWO_B) || row
-            .contains(PieceConst.IMPLICATE_TWO_C) || row.contains(PieceConst.IMPLICATE_TWO_D)) {
-            strategy[5]++;
-            return;
-        }
+    private static long heuristic(byte[] row, int length) {
+        int rank = LinePatternTable.pieceRank(ChessboardScanUtils.encode(row, length), length);
+        return rank == LinePatternTable.NO_PIECE_PATTERN ? 0L : 1L << (rank * COUNT_BITS);
+    }
 
-        if (row.contains(PieceConst.IMPLICATE_ONE_A) || row.contains(PieceConst.IMPLICATE_ONE_B)) {
-            strategy[6]++;
-        }
+    /**
+     * Returns the pattern count of a rank
+     *
+     * @param strategy The packed pattern counts
+     * @param rank     Index of the counter
+     * @return Number of patterns of the rank
+     */
+    private static int count(long strategy, int rank) {
+        return (int)(strategy >>> (rank * COUNT_BITS)) & 0xFF;
     }
 }
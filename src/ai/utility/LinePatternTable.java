@@ -0,0 +1,251 @@
+package ai.utility;
+
+import ai.constant.AiConst;
+import ai.constant.PieceConst;
+
+/**
+ * This class provides precomputed lookup tables for matching the patterns of a row of pieces
+ * <p>
+ * A row is encoded as a packed integer with 2 bits per tile, 0 for empty, 1 for ally, 2 for opponent and 3 for
+ * the border, the first tile of the row is stored in the highest bits. The patterns in {@link AiConst} and
+ * {@link PieceConst} are grouped by their priority (rank), and every window of tiles is mapped to the best rank
+ * matched at its first tile. Matching a row therefore costs one array access per tile, or one array access in
+ * total for rows of at most 9 tiles, instead of one String.contains call per pattern.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class LinePatternTable {
+    /**
+     * Codes of tiles
+     */
+    public static final int EMPTY = 0;
+
+    public static final int ALLY = 1;
+
+    public static final int OPPONENT = 2;
+
+    public static final int BORDER = 3;
+
+    /**
+     * Patterns of {@link HeuristicChessboardUtils#eval(int, int)} grouped by rank, lower rank wins
+     */
+    private static final String[][] LINE_PATTERNS = {
+        {AiConst.IMPLICATE_FIVE},
+        {AiConst.IMPLICATE_FOUR_DOUBLE_EMPTY},
+        {AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_A, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_B,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_C, AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_D,
+            AiConst.IMPLICATE_FOUR_SINGLE_EMPTY_E},
+        {AiConst.IMPLICATE_THREE_A, AiConst.IMPLICATE_THREE_B, AiConst.IMPLICATE_THREE_C, AiConst.IMPLICATE_THREE_D},
+        {AiConst.IMPLICATE_TWO_A, AiConst.IMPLICATE_TWO_B, AiConst.IMPLICATE_TWO_C},
+        {AiConst.IMPLICATE_ONE_A, AiConst.IMPLICATE_ONE_B}
+    };
+
+    /**
+     * Score of each rank of {@link #LINE_PATTERNS}, the last one is used when nothing matches
+     */
+    private static final int[] LINE_SCORES = {500000, 10000, 820, 720, 120, 20, 0};
+
+    /**
+     * Patterns of {@link HeuristicPieceUtils} grouped by rank, the rank is the index of the strategy counter
+     */
+    private static final String[][] PIECE_PATTERNS = {
+        {PieceConst.IMPLICATE_FIVE},
+        {PieceConst.IMPLICATE_FOUR_A},
+        {PieceConst.IMPLICATE_FOUR_BLOCK_A, PieceConst.IMPLICATE_FOUR_BLOCK_B, PieceConst.IMPLICATE_FOUR_BLOCK_C,
+            PieceConst.IMPLICATE_FOUR_BLOCK_D, PieceConst.IMPLICATE_FOUR_BLOCK_E},
+        {PieceConst.IMPLICATE_THREE_A, PieceConst.IMPLICATE_THREE_B, PieceConst.IMPLICATE_THREE_C,
+            PieceConst.IMPLICATE_THREE_D},
+        {PieceConst.IMPLICATE_THREE_BLOCK_A, PieceConst.IMPLICATE_THREE_BLOCK_B, PieceConst.IMPLICATE_THREE_BLOCK_C,
+            PieceConst.IMPLICATE_THREE_BLOCK_D, PieceConst.IMPLICATE_THREE_BLOCK_E, PieceConst.IMPLICATE_THREE_BLOCK_F,
+            PieceConst.IMPLICATE_THREE_BLOCK_G, PieceConst.IMPLICATE_THREE_BLOCK_H, PieceConst.IMPLICATE_THREE_BLOCK_I,
+            PieceConst.IMPLICATE_THREE_BLOCK_J},
+        {PieceConst.IMPLICATE_TWO_A, PieceConst.IMPLICATE_TWO_B, PieceConst.IMPLICATE_TWO_C,
+            PieceConst.IMPLICATE_TWO_D},
+        {PieceConst.IMPLICATE_ONE_A, PieceConst.IMPLICATE_ONE_B}
+    };
+
+    /**
+     * Rank returned when a row matches none of the line patterns
+     */
+    public static final int NO_LINE_PATTERN = LINE_PATTERNS.length;
+
+    /**
+     * Rank returned when a row matches none of the piece patterns
+     */
+    public static final int NO_PIECE_PATTERN = PIECE_PATTERNS.length;
+
+    /**
+     * Number of tiles of a window, equals to the length of the longest pattern
+     */
+    private static final int LINE_WINDOW = 6;
+
+    private static final int PIECE_WINDOW = 7;
+
+    /**
+     * Rows up to this length are looked up directly without sliding a window
+     */
+    private static final int SHORT_ROW = 9;
+
+    /**
+     * Best line rank matched at the first tile of each window of 6 tiles
+     */
+    private static final byte[] LINE_WINDOW_RANKS = buildWindowTable(LINE_PATTERNS, LINE_WINDOW);
+
+    /**
+     * Best piece rank matched at the first tile of each window of 7 tiles
+     */
+    private static final byte[] PIECE_WINDOW_RANKS = buildWindowTable(PIECE_PATTERNS, PIECE_WINDOW);
+
+    /**
+     * Best line rank of each row of 9 tiles
+     */
+    private static final byte[] SHORT_ROW_RANKS = buildRowTable();
+
+    private LinePatternTable() {
+    }
+
+    /**
+     * Returns the code of a piece
+     *
+     * @param piece     The piece, 1 for black, -1 for white and 0 for empty
+     * @param pieceType Type of the ally piece
+     * @return Code of the piece
+     */
+    public static int encode(int piece, int pieceType) {
+        return piece == AiConst.EMPTY_STONE ? EMPTY : piece == pieceType ? ALLY : OPPONENT;
+    }
+
+    /**
+     * Returns the code of a character used in the pattern strings
+     *
+     * @param c Character of the tile
+     * @return Code of the tile, characters other than '0', '1' and '2' are treated as border
+     */
+    private static int encode(char c) {
+        switch (c) {
+            case '0':
+                return EMPTY;
+            case '1':
+                return ALLY;
+            case '2':
+                return OPPONENT;
+            default:
+                return BORDER;
+        }
+    }
+
+    /**
+     * Returns the best line rank of an encoded row
+     *
+     * @param code   The encoded row
+     * @param length Number of tiles in the row, at most 15
+     * @return Rank of the row, or {@link #NO_LINE_PATTERN} if nothing matches
+     */
+    public static int lineRank(int code, int length) {
+        if (length <= SHORT_ROW) {
+            int padding = SHORT_ROW - length;
+            return SHORT_ROW_RANKS[(code << 2 * padding) | ((1 << 2 * padding) - 1)];
+        }
+        return slide(LINE_WINDOW_RANKS, LINE_WINDOW, code, length);
+    }
+
+    /**
+     * Returns the score of a line rank
+     *
+     * @param rank Rank of a row
+     * @return Score of the rank
+     */
+    public static int lineScore(int rank) {
+        return LINE_SCORES[rank];
+    }
+
+    /**
+     * Returns the best piece rank of an encoded row
+     *
+     * @param code   The encoded row
+     * @param length Number of tiles in the row, at most 15
+     * @return Rank of the row, or {@link #NO_PIECE_PATTERN} if nothing matches
+     */
+    public static int pieceRank(int code, int length) {
+        return slide(PIECE_WINDOW_RANKS, PIECE_WINDOW, code, length);
+    }
+
+    /**
+     * Slides a window over an encoded row and returns the best rank, the row is followed by border tiles so
+     * every window starting inside the row is complete
+     *
+     * @param table  Window table
+     * @param width  Number of tiles of a window
+     * @param code   The encoded row
+     * @param length Number of tiles in the row
+     * @return Best rank of the row
+     */
+    private static int slide(byte[] table, int width, int code, int length) {
+        int mask = (1 << 2 * width) - 1;
+        int window = mask;
+        int rank = Byte.MAX_VALUE;
+        for (int i = length - 1; i >= 0; i--) {
+            window = ((window << 2) | ((code >>> 2 * i) & BORDER)) & mask;
+            rank = Math.min(rank, table[window]);
+        }
+        for (int i = 1; i < width; i++) {
+            window = ((window << 2) | BORDER) & mask;
+            rank = Math.min(rank, table[window]);
+        }
+        return rank;
+    }
+
+    /**
+     * Builds the table mapping every window to the best rank matched at its first tile
+     *
+     * @param patterns Patterns grouped by rank
+     * @param width    Number of tiles of a window
+     * @return The window table
+     */
+    private static byte[] buildWindowTable(String[][] patterns, int width) {
+        byte[] table = new byte[1 << 2 * width];
+        for (int window = 0; window < table.length; window++) {
+            table[window] = (byte)patterns.length;
+            for (int rank = 0; rank < patterns.length && table[window] == patterns.length; rank++) {
+                for (String pattern : patterns[rank]) {
+                    if (matches(window, width, pattern)) {
+                        table[window] = (byte)rank;
+                        break;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether a pattern matches the first tiles of a window
+     *
+     * @param window  The encoded window
+     * @param width   Number of tiles of the window
+     * @param pattern The pattern
+     * @return A boolean indicates whether the pattern matches or not
+     */
+    private static boolean matches(int window, int width, String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (((window >>> 2 * (width - 1 - i)) & BORDER) != encode(pattern.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the table mapping every row of 9 tiles to its best line rank
+     *
+     * @return The row table
+     */
+    private static byte[] buildRowTable() {
+        byte[] table = new byte[1 << 2 * SHORT_ROW];
+        for (int code = 0; code < table.length; code++) {
+            table[code] = (byte)slide(LINE_WINDOW_RANKS, LINE_WINDOW, code, SHORT_ROW);
+        }
+        return table;
+    }
+}
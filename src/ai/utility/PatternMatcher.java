@@ -0,0 +1,130 @@
+package ai.utility;
+
+import ai.constant.AiConst;
+
+/**
+ * This class matches many patterns against a row of pieces in a single pass
+ * <p>
+ * The patterns in the format of {@link AiConst} ('0' for empty, '1' for ally, '2' for opponent and 't' for a
+ * marked tile) are grouped into classes and compiled once into an Aho-Corasick automaton over the 4 tile codes of
+ * {@link ChessboardScanUtils}. Scanning a row costs one table access per tile no matter how many patterns there
+ * are, and the result reports every class which has at least one pattern in the row.
+ *
+ * @author Cirun Zhang
+ * @version 1.0
+ */
+public class PatternMatcher {
+    /**
+     * Number of tile codes, 0 for empty, 1 for ally, 2 for opponent and 3 for threat
+     */
+    private static final int ALPHABET = 4;
+
+    /**
+     * Transitions of the automaton with the format of [state * 4 + tile code]
+     */
+    private final int[] transitions;
+
+    /**
+     * Classes matched when entering each state, one bit per class
+     */
+    private final int[] outputs;
+
+    /**
+     * Compiles the automaton
+     *
+     * @param classes Patterns grouped by class, at most 32 classes
+     */
+    public PatternMatcher(String[][] classes) {
+        int maxStates = 1;
+        for (String[] patterns : classes) {
+            for (String pattern : patterns) {
+                maxStates += pattern.length();
+            }
+        }
+
+        int[] trie = new int[maxStates * ALPHABET];
+        int[] output = new int[maxStates];
+        int states = 1;
+
+        //build the trie, 0 represents a missing edge since the root is never a child
+        for (int c = 0; c < classes.length; c++) {
+            for (String pattern : classes[c]) {
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int edge = state * ALPHABET + code(pattern.charAt(i));
+                    if (trie[edge] == 0) {
+                        trie[edge] = states++;
+                    }
+                    state = trie[edge];
+                }
+                output[state] |= 1 << c;
+            }
+        }
+
+        //turn the trie into a complete automaton by following the failure links in breadth-first order
+        int[] failures = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int tile = 0; tile < ALPHABET; tile++) {
+            if (trie[tile] != 0) {
+                queue[tail++] = trie[tile];
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            output[state] |= output[failures[state]];
+            for (int tile = 0; tile < ALPHABET; tile++) {
+                int edge = state * ALPHABET + tile;
+                int fallback = trie[failures[state] * ALPHABET + tile];
+                if (trie[edge] == 0) {
+                    trie[edge] = fallback;
+                } else {
+                    failures[trie[edge]] = fallback;
+                    queue[tail++] = trie[edge];
+                }
+            }
+        }
+
+        transitions = new int[states * ALPHABET];
+        System.arraycopy(trie, 0, transitions, 0, transitions.length);
+        outputs = new int[states];
+        System.arraycopy(output, 0, outputs, 0, states);
+    }
+
+    /**
+     * Scans a row of pieces
+     *
+     * @param row    A sequence of tile codes
+     * @param length Number of tiles in the sequence
+     * @return Classes found in the row, bit c is set if a pattern of class c is found
+     */
+    public int match(byte[] row, int length) {
+        int state = 0;
+        int matched = 0;
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * ALPHABET + row[i]];
+            matched |= outputs[state];
+        }
+        return matched;
+    }
+
+    /**
+     * Returns the code of a character used in the patterns
+     *
+     * @param c Character of the tile
+     * @return Code of the tile, characters other than '0', '1' and '2' are treated as 't'
+     */
+    private static int code(char c) {
+        switch (c) {
+            case '0':
+                return LinePatternTable.EMPTY;
+            case '1':
+                return LinePatternTable.ALLY;
+            case '2':
+                return LinePatternTable.OPPONENT;
+            default:
+                return ChessboardScanUtils.THREAT;
+        }
+    }
+}
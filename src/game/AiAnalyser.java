@@ -76,6 +76,24 @@ public class AiAnalyser {
             case GameConst.THREAT_SPACE_SEARCH:
                 result = ThreatSpace.startThreatSpaceSearch(chess);
                 break;
+            case GameConst.ITERATIVE_DEEPENING:
+                result = MinimaxAbp.startIterativeDeepening(chess);
+                break;
+            case GameConst.LAZY_SMP:
+                result = Transposition.startLazySmp(chess);
+                break;
+            case GameConst.PARALLEL_ALPHA_BETA:
+                result = YoungBrothersWait.startParallelAlphaBetaPruning(chess);
+                break;
+            case GameConst.PARALLEL_MONTE_CARLO:
+                result = MonteCarlo.parallelMonteCarloTreeSearch(chess);
+                break;
+            case GameConst.ROOT_PARALLEL_MONTE_CARLO:
+                result = MonteCarlo.rootParallelMonteCarloTreeSearch(chess);
+                break;
+            case GameConst.RAVE_MONTE_CARLO:
+                result = MonteCarlo.raveMonteCarloTreeSearch(chess);
+                break;
             default:
                 System.err.println("Invalid Ai Index");
                 return false;
@@ -125,6 +143,30 @@ public class AiAnalyser {
                 System.out.println("THREAT_SPACE_SEARCH wins");
                 System.out.println("First move: " + isMoveFirst);
                 break;
+            case GameConst.ITERATIVE_DEEPENING:
+                System.out.println("ITERATIVE_DEEPENING wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
+            case GameConst.LAZY_SMP:
+                System.out.println("LAZY_SMP wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
+            case GameConst.PARALLEL_ALPHA_BETA:
+                System.out.println("PARALLEL_ALPHA_BETA wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
+            case GameConst.PARALLEL_MONTE_CARLO:
+                System.out.println("PARALLEL_MONTE_CARLO wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
+            case GameConst.ROOT_PARALLEL_MONTE_CARLO:
+                System.out.println("ROOT_PARALLEL_MONTE_CARLO wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
+            case GameConst.RAVE_MONTE_CARLO:
+                System.out.println("RAVE_MONTE_CARLO wins");
+                System.out.println("First move: " + isMoveFirst);
+                break;
             default:
                 System.err.println("Invalid Ai Index");
         }
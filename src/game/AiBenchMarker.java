@@ -1,9 +1,10 @@
 package game;
 
 import ai.Agent;
-import ai.constant.AiConst;
+import ai.board.Position;
 import ai.utility.ChessboardScanUtils;
 import ai.utility.HeuristicChessboardUtils;
+import ai.utility.LinePatternTable;
 import gui.constant.GuiConst;
 
 import java.util.ArrayList;
@@ -27,16 +28,18 @@ public class AiBenchMarker extends Agent {
      */
     public static int[] nextMove(int[][] chess) {
         moveCandidates.clear();
+        Position position = new Position(chess);
 
-        if (isOpening(chess)) {
+        if (isOpening(position)) {
             return openingStrategy();
         } else {
             int currentMaxScore = Integer.MIN_VALUE;
+            byte[] row = new byte[ChessboardScanUtils.ROW_LENGTH];
             for (int i = 0; i < GuiConst.TILE_NUM_PER_ROW; i++) {
                 for (int j = 0; j < GuiConst.TILE_NUM_PER_ROW; j++) {
-                    //for each empty tiles, calculates their marks
-                    if (chess[i][j] == AiConst.EMPTY_STONE) {
-                        int score = totalMark(chess, i, j);
+                    //for each candidate tiles, calculates their marks
+                    if (position.isCandidate(Position.index(i, j))) {
+                        int score = totalMark(position, i, j, row);
                         if (score > currentMaxScore) {
                             currentMaxScore = score;
                             //Add to the head of the candidate list
@@ -57,24 +60,26 @@ public class AiBenchMarker extends Agent {
     /**
      * Calculate the total mark for both AI and human
      *
-     * @param chess The chessboard
-     * @param x     X-coordinate of the piece
-     * @param y     Y-coordinate of the piece
+     * @param position The chessboard
+     * @param x        X-coordinate of the piece
+     * @param y        Y-coordinate of the piece
+     * @param row      Array used for holding one row of pieces
      * @return Evaluation score
      */
-    private static int totalMark(int[][] chess, int x, int y) {
-        return markPiece(chess, x, y, -1) + markPiece(chess, x, y, 1);
+    private static int totalMark(Position position, int x, int y, byte[] row) {
+        return markPiece(position, x, y, -1, row) + markPiece(position, x, y, 1, row);
+    }
+
+    private static int markPiece(Position position, int x, int y, int pieceType, byte[] row) {
+        int centre = LinePatternTable.ALLY;
+        return eval(row, ChessboardScanUtils.horizontalAdjacentPieces10(position, x, y, pieceType, centre, row))
+                + eval(row, ChessboardScanUtils.verticalAdjacentPieces10(position, x, y, pieceType, centre, row))
+                + eval(row, ChessboardScanUtils.diagonalAdjacentPieces10(position, x, y, pieceType, centre, row))
+                + eval(row, ChessboardScanUtils.antiDiagonalAdjacentPieces10(position, x, y, pieceType, centre, row));
     }
 
-    private static int markPiece(int[][] chess, int x, int y, int pieceType) {
-        return
-            HeuristicChessboardUtils.eval(ChessboardScanUtils.horizontalAdjacentPieces10(chess, x, y, pieceType, '1'))
-                + HeuristicChessboardUtils
-                .eval(ChessboardScanUtils.verticalAdjacentPieces10(chess, x, y, pieceType, '1'))
-                + HeuristicChessboardUtils
-                .eval(ChessboardScanUtils.diagonalAdjacentPieces10(chess, x, y, pieceType, '1'))
-                + HeuristicChessboardUtils
-                .eval(ChessboardScanUtils.antiDiagonalAdjacentPieces10(chess, x, y, pieceType, '1'));
+    private static int eval(byte[] row, int length) {
+        return HeuristicChessboardUtils.eval(ChessboardScanUtils.encode(row, length), length);
     }
 
     /**
@@ -1,9 +1,10 @@
 package game;
 
 import ai.Agent;
+import ai.board.Position;
+import ai.board.Zobrist;
 import ai.constant.AiConst;
 import gui.constant.GuiConst;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class is used for game controlling, it controls and preserve some important functions and data
@@ -21,9 +22,9 @@ public class GameController {
     public static int[][] chess;
 
     /**
-     * Stores Zobrist key-values
+     * 64-bit Zobrist hash of the chessboard, updated by placePiece and removePiece
      */
-    public static int[][][] zobrist;
+    private static long hash;
 
     /**
      * Index of the current AI agent
@@ -45,28 +46,48 @@ public class GameController {
      */
     public static void resetChessboard(){
         chess = new int[GuiConst.TILE_NUM_PER_ROW][GuiConst.TILE_NUM_PER_ROW];
+        hash = 0L;
     }
 
     /**
-     * Regenerates all Zobrist key-values
+     * Places a piece on the chessboard and updates the hash
+     *
+     * @param x         X coordinate of the piece
+     * @param y         Y coordinate of the piece
+     * @param pieceType Type of piece, 1 for black and -1 for white
      */
-    private static void resetZobrist(){
-        zobrist = new int[2][GuiConst.TILE_NUM_PER_ROW][GuiConst.TILE_NUM_PER_ROW];
-        for(int i = 0; i < zobrist.length; i++){
-            for(int j = 0; j < zobrist[0].length; j++){
-                for(int k = 0; k < zobrist[0][0].length; k++){
-                    zobrist[i][j][k] = ThreadLocalRandom.current().nextInt(0, Integer.MAX_VALUE);
-                }
-            }
+    public static void placePiece(int x, int y, int pieceType){
+        chess[x][y] = pieceType;
+        hash ^= Zobrist.key(Position.index(x, y), pieceType);
+    }
+
+    /**
+     * Removes a piece from the chessboard and updates the hash
+     *
+     * @param x X coordinate of the piece
+     * @param y Y coordinate of the piece
+     */
+    public static void removePiece(int x, int y){
+        if(chess[x][y] != AiConst.EMPTY_STONE){
+            hash ^= Zobrist.key(Position.index(x, y), chess[x][y]);
+            chess[x][y] = AiConst.EMPTY_STONE;
         }
     }
 
+    /**
+     * Returns the Zobrist hash of the chessboard
+     *
+     * @return 64-bit hash value
+     */
+    public static long getHash(){
+        return hash;
+    }
+
     /**
      * Initialize the game
      */
     public static void initGame(){
         resetChessboard();
-        resetZobrist();
     }
 
     public static int getAiIndex(){
@@ -50,6 +50,36 @@ public class GameConst {
      */
     public static final int MONTE_CARLO_TREE_SEARCH = 6;
 
+    /**
+     * Code for iterative deepening alpha beta pruning bounded by a time budget
+     */
+    public static final int ITERATIVE_DEEPENING = 7;
+
+    /**
+     * Code for multi-threaded transposition search with Lazy SMP bounded by a time budget
+     */
+    public static final int LAZY_SMP = 8;
+
+    /**
+     * Code for parallel alpha beta pruning with the Young Brothers Wait Concept
+     */
+    public static final int PARALLEL_ALPHA_BETA = 9;
+
+    /**
+     * Code for tree-parallel monte carlo tree search with virtual loss
+     */
+    public static final int PARALLEL_MONTE_CARLO = 10;
+
+    /**
+     * Code for root-parallel monte carlo tree search
+     */
+    public static final int ROOT_PARALLEL_MONTE_CARLO = 11;
+
+    /**
+     * Code for monte carlo tree search with RAVE
+     */
+    public static final int RAVE_MONTE_CARLO = 12;
+
     /**
      * Code for human move first
      */
@@ -102,7 +102,7 @@ public class Chessboard extends JPanel {
                     if (validateArrayIndex(xArrayIndex) && validateArrayIndex(yArrayIndex)
                         && GameController.chess[xArrayIndex][yArrayIndex] == 0) {
 
-                        GameController.chess[xArrayIndex][yArrayIndex] = Agent.aiPieceType * -1;
+                        GameController.placePiece(xArrayIndex, yArrayIndex, Agent.aiPieceType * -1);
 
                         Background.addMessage("Human Move: (x," + xArrayIndex + "), (y," + yArrayIndex + ")");
 
@@ -232,8 +232,8 @@ public class Chessboard extends JPanel {
         if (HistoryObserver.getHistorySize() >= 2) {
             int[] lastMove1 = HistoryObserver.popHistory();
             int[] lastMove2 = HistoryObserver.popHistory();
-            GameController.chess[lastMove1[0]][lastMove1[1]] = 0;
-            GameController.chess[lastMove2[0]][lastMove2[1]] = 0;
+            GameController.removePiece(lastMove1[0], lastMove1[1]);
+            GameController.removePiece(lastMove2[0], lastMove2[1]);
             if (resultPane != null) {
                 this.remove(resultPane);
             }
@@ -284,7 +284,25 @@ public class Chessboard extends JPanel {
                 result = ThreatSpace.startThreatSpaceSearch(chess);
                 break;
             case GameConst.MONTE_CARLO_TREE_SEARCH:
-                result = MonteCarlo.monteCarloTreeSearch(chess);
+                result = MonteCarlo.monteCarloTreeSearch(chess, GameController.getHash());
+                break;
+            case GameConst.ITERATIVE_DEEPENING:
+                result = MinimaxAbp.startIterativeDeepening(chess);
+                break;
+            case GameConst.LAZY_SMP:
+                result = Transposition.startLazySmp(chess);
+                break;
+            case GameConst.PARALLEL_ALPHA_BETA:
+                result = YoungBrothersWait.startParallelAlphaBetaPruning(chess);
+                break;
+            case GameConst.PARALLEL_MONTE_CARLO:
+                result = MonteCarlo.parallelMonteCarloTreeSearch(chess, GameController.getHash());
+                break;
+            case GameConst.ROOT_PARALLEL_MONTE_CARLO:
+                result = MonteCarlo.rootParallelMonteCarloTreeSearch(chess);
+                break;
+            case GameConst.RAVE_MONTE_CARLO:
+                result = MonteCarlo.raveMonteCarloTreeSearch(chess, GameController.getHash());
                 break;
             default:
                 System.err.println("Invalid Ai Index");
@@ -293,7 +311,7 @@ public class Chessboard extends JPanel {
         int x = result[0];
         int y = result[1];
         int pieceType = result[2];
-        chess[x][y] = pieceType;
+        GameController.placePiece(x, y, pieceType);
         //Check whether the wining case is reached
         checkFiveInLine(chess, x, y);
         HistoryObserver.addHistory(result);
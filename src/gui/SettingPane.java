@@ -1,6 +1,7 @@
 package gui;
 
 import ai.Agent;
+import ai.constant.AiConst;
 import game.GameController;
 import game.constant.GameConst;
 
@@ -26,6 +27,14 @@ public class SettingPane extends JFrame {
         tmp1.add(tip1);
         tmp1.add(depthSpinner);
 
+        //Time budget controller, only used by the searches bounded by time
+        JLabel tip4 = new JLabel("Time Budget (ms)");
+        JSpinner timeSpinner = new JSpinner(new SpinnerNumberModel(AiConst.DEFAULT_TIME_BUDGET, 100, 60000, 100));
+        timeSpinner.setEnabled(false);
+        JPanel tmp5 = new JPanel();
+        tmp5.add(tip4);
+        tmp5.add(timeSpinner);
+
         //Ai agent controller
         JPanel tmp2 = new JPanel();
         JComboBox<String> comboBox = new JComboBox<>();
@@ -37,16 +46,24 @@ public class SettingPane extends JFrame {
         comboBox.addItem("Killer heuristic");
         comboBox.addItem("Threat space search");
         comboBox.addItem("Monte carlo tree search");
+        comboBox.addItem("Iterative deepening");
+        comboBox.addItem("Lazy SMP");
+        comboBox.addItem("Parallel alpha beta pruning");
+        comboBox.addItem("Parallel monte carlo tree search");
+        comboBox.addItem("Root parallel monte carlo tree search");
+        comboBox.addItem("Monte carlo tree search with RAVE");
         comboBox.setSelectedIndex(2);
         comboBox.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 int aiIndex = comboBox.getSelectedIndex();
-                if (aiIndex == GameConst.MONTE_CARLO_TREE_SEARCH || aiIndex == GameConst.BEST_FIRST) {
+                boolean isTimeBounded = isTimeBounded(aiIndex);
+                if (aiIndex == GameConst.BEST_FIRST || isTimeBounded) {
                     depthSpinner.setEnabled(false);
                 } else {
                     depthSpinner.setEnabled(true);
                 }
+                timeSpinner.setEnabled(isTimeBounded);
             }
         });
         tmp2.add(tip2);
@@ -69,14 +86,20 @@ public class SettingPane extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 int depth = (int)depthSpinner.getValue();
+                int timeBudget = (int)timeSpinner.getValue();
                 int aiIndex = comboBox.getSelectedIndex();
                 int firstMove = comboBox2.getSelectedIndex();
                 Agent.setMaximumSearchDepth(depth);
+                Agent.setTimeBudget(timeBudget);
                 GameController.setAiIndex(aiIndex);
                 GameController.setGameInProgress(true);
                 setWhichPlayerMoveFirst(firstMove);
                 MainFrame.resetGame();
-                Background.addMessage("Search tree depth: " + depth);
+                if (isTimeBounded(aiIndex)) {
+                    Background.addMessage("Time budget: " + timeBudget + " ms");
+                } else {
+                    Background.addMessage("Search tree depth: " + depth);
+                }
                 Background.addMessage("AI strategy: " + comboBox.getSelectedItem());
                 dispose();
             }
@@ -84,16 +107,29 @@ public class SettingPane extends JFrame {
         tmp4.add(confirmButton);
 
         boxLayout.add(tmp1);
+        boxLayout.add(tmp5);
         boxLayout.add(tmp2);
         boxLayout.add(tmp3);
         boxLayout.add(tmp4);
-        this.setSize(300, 200);
+        this.setSize(300, 240);
         this.setResizable(false);
         this.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
         this.add(boxLayout);
         this.setVisible(false);
     }
 
+    /**
+     * Checks whether an AI agent stops on the time budget
+     *
+     * @param aiIndex The index of the agent
+     * @return A boolean indicates whether the agent reads the time budget
+     */
+    private static boolean isTimeBounded(int aiIndex) {
+        return aiIndex == GameConst.ITERATIVE_DEEPENING || aiIndex == GameConst.LAZY_SMP
+            || aiIndex == GameConst.MONTE_CARLO_TREE_SEARCH || aiIndex == GameConst.PARALLEL_MONTE_CARLO
+            || aiIndex == GameConst.ROOT_PARALLEL_MONTE_CARLO || aiIndex == GameConst.RAVE_MONTE_CARLO;
+    }
+
     /**
      * Sets which player will move first
      *
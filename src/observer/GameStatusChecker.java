@@ -1,6 +1,6 @@
 package observer;
 
-import gui.Chessboard;
+import ai.board.Position;
 
 /**
  * This class is used to check the wining case
@@ -14,7 +14,8 @@ public class GameStatusChecker {
     }
 
     /**
-     * Determines whether wining case if formed
+     * Determines whether wining case if formed, the pieces next to the new piece are counted in each of the four
+     * directions without allocating
      *
      * @param chess       The 2-dimensional array represents pieces locations
      * @param xArrayIndex X-coordinate of the new placed piece
@@ -23,145 +24,53 @@ public class GameStatusChecker {
      */
     public static boolean isFiveInLine(int[][] chess, int xArrayIndex, int yArrayIndex) {
         int pieceType = chess[xArrayIndex][yArrayIndex];
-
-        return verticalCheck(chess, xArrayIndex, yArrayIndex, pieceType) || horizontalCheck(chess, xArrayIndex,
-            yArrayIndex, pieceType) || diagonalCheck(chess, xArrayIndex, yArrayIndex, pieceType) || antiDiagonalCheck(
-            chess, xArrayIndex, yArrayIndex, pieceType);
-    }
-
-    /**
-     * Determine whether five pieces are in the same vertical row
-     *
-     * @param chess          The 2-dimensional array represents pieces locations
-     * @param xArrayPosition The x axis coordinate of the new piece
-     * @param yArrayPosition The y axis coordinate of the new piece
-     * @param pieceType      1 for black piece and -1 for white piece
-     * @return Returns true if five pieces are in the same vertical row
-     */
-    private static boolean verticalCheck(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        int numOfPiecesInLine = 1;
-        //check upward
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(yArrayPosition + i)
-                && chess[xArrayPosition][yArrayPosition + i] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-
-        //check downward
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(yArrayPosition - i)
-                && chess[xArrayPosition][yArrayPosition - i] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-        return numOfPiecesInLine >= 5;
-    }
-
-    /**
-     * Determine whether five pieces are in the same horizontal row
-     *
-     * @param chess          The 2-dimensional array represents pieces locations
-     * @param xArrayPosition The x axis coordinate of the new piece
-     * @param yArrayPosition The y axis coordinate of the new piece
-     * @param pieceType      1 for black piece and -1 for white piece
-     * @return Returns true if five pieces are in the same horizontal row
-     */
-    private static boolean horizontalCheck(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        int numOfPiecesInLine = 1;
-        //check right
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i)
-                && chess[xArrayPosition + i][yArrayPosition] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
+        if (pieceType == 0) {
+            return false;
         }
 
-        //check left
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i)
-                && chess[xArrayPosition - i][yArrayPosition] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-        return numOfPiecesInLine >= 5;
+        //vertical, horizontal, diagonal and anti-diagonal
+        return countInLine(chess, xArrayIndex, yArrayIndex, 0, 1, pieceType) >= 5
+            || countInLine(chess, xArrayIndex, yArrayIndex, 1, 0, pieceType) >= 5
+            || countInLine(chess, xArrayIndex, yArrayIndex, 1, 1, pieceType) >= 5
+            || countInLine(chess, xArrayIndex, yArrayIndex, 1, -1, pieceType) >= 5;
     }
 
     /**
-     * Determine whether five pieces are in the same line from right bottom to left top
+     * Counts the pieces of the same type in a line through a piece, at most 4 pieces are walked on each side
      *
-     * @param chess          The 2-dimensional array represents pieces locations
-     * @param xArrayPosition The x axis coordinate of the new piece
-     * @param yArrayPosition The y axis coordinate of the new piece
-     * @param pieceType      1 for black piece and -1 for white piece
-     * @return Returns true if five pieces are in the same line from right bottom to left top
+     * @param chess     The 2-dimensional array represents pieces locations
+     * @param x         X-coordinate of the piece
+     * @param y         Y-coordinate of the piece
+     * @param dx        Step of the line along the x axis
+     * @param dy        Step of the line along the y axis
+     * @param pieceType 1 for black piece and -1 for white piece
+     * @return Number of pieces in line including the piece itself
      */
-    private static boolean diagonalCheck(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
+    private static int countInLine(int[][] chess, int x, int y, int dx, int dy, int pieceType) {
         int numOfPiecesInLine = 1;
-
-        //check piece to left top
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard.validateArrayIndex(yArrayPosition - i)
-                && chess[xArrayPosition - i][yArrayPosition - i] == pieceType) {
+        for (int sign = -1; sign <= 1; sign += 2) {
+            for (int i = 1; i < 5; i++) {
+                int xi = x + sign * i * dx;
+                int yi = y + sign * i * dy;
+                if (xi < 0 || yi < 0 || xi >= chess.length || yi >= chess[xi].length || chess[xi][yi] != pieceType) {
+                    break;
+                }
                 numOfPiecesInLine++;
-            } else {
-                break;
             }
         }
-
-        //check piece to right bottom
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard.validateArrayIndex(yArrayPosition + i)
-                && chess[xArrayPosition + i][yArrayPosition + i] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-
-        return numOfPiecesInLine >= 5;
+        return numOfPiecesInLine;
     }
 
     /**
-     * Determine whether five pieces are in the same line from left bottom to right top
+     * Determines whether wining case if formed, the line masks of the chessboard are tested without walking the
+     * tiles {@link Position#isFiveInLine(int)}
      *
-     * @param chess          The 2-dimensional array represents pieces locations
-     * @param xArrayPosition The x axis coordinate of the new piece
-     * @param yArrayPosition The y axis coordinate of the new piece
-     * @param pieceType      1 for black piece and -1 for white piece
-     * @return Returns true if five pieces are in the same line from left bottom to right top
+     * @param position    The chessboard
+     * @param xArrayIndex X-coordinate of the new placed piece
+     * @param yArrayIndex Y-coordinate of the new placed piece
+     * @return Returns true if the game is over and false if the game is still in progress
      */
-    private static boolean antiDiagonalCheck(int[][] chess, int xArrayPosition, int yArrayPosition, int pieceType) {
-        int numOfPiecesInLine = 1;
-
-        //check piece to right top
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition + i) && Chessboard.validateArrayIndex(yArrayPosition - i)
-                && chess[xArrayPosition + i][yArrayPosition - i] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-
-        //check piece to left bottom
-        for (int i = 1; i < 5; i++) {
-            if (Chessboard.validateArrayIndex(xArrayPosition - i) && Chessboard.validateArrayIndex(yArrayPosition + i)
-                && chess[xArrayPosition - i][yArrayPosition + i] == pieceType) {
-                numOfPiecesInLine++;
-            } else {
-                break;
-            }
-        }
-
-        return numOfPiecesInLine >= 5;
+    public static boolean isFiveInLine(Position position, int xArrayIndex, int yArrayIndex) {
+        return position.isFiveInLine(Position.index(xArrayIndex, yArrayIndex));
     }
 }
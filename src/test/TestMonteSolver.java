@@ -0,0 +1,38 @@
+package test;
+
+import ai.MonteCarlo;
+
+/**
+ * Checks that MCTS proves a node whose best few replies all lose and stops early, the AI (white) has an open three
+ * and wins by making an open four
+ */
+public class TestMonteSolver {
+    private static final int ITERATION_BUDGET = 20000;
+
+    public static void main(String[] args) {
+        int[][] chess = new int[15][15];
+        chess[7][5] = -1;
+        chess[7][6] = -1;
+        chess[7][7] = -1;
+        chess[3][3] = 1;
+        chess[3][5] = 1;
+        chess[4][4] = 1;
+        chess[11][11] = 1;
+
+        MonteCarlo.setIterationBudget(ITERATION_BUDGET);
+        int[] move = MonteCarlo.monteCarloTreeSearch(chess);
+        int visits = MonteCarlo.getRootVisits();
+        System.out.println("move: " + move[0] + "," + move[1] + " root visits: " + visits);
+
+        if (move[0] != 7 || move[1] != 4 && move[1] != 8) {
+            throw new AssertionError("The open four is not played");
+        }
+        if (!MonteCarlo.isRootProven()) {
+            throw new AssertionError("The root is not proven");
+        }
+        if (visits >= ITERATION_BUDGET / 10) {
+            throw new AssertionError("The search does not stop early, root visits: " + visits);
+        }
+        System.out.println("passed");
+    }
+}